@@ -1,4 +1,3 @@
-import java.util.List;
 import java.util.Random;           
 
 /**
@@ -10,70 +9,51 @@ import java.util.Random;
  */
 public abstract class Animal extends Organism
 {
-    // animal's age
-    private int age;
-    // Animal's Sex
-    private Sex gender;
-    //countdown until birth of child
-    protected int pregnancyCounter = -1; // (-1 signifies the animal is not pregnant yet)
-    //number of expected births in current cycle
-    protected int numBirths = 0;
-    //indicates whether animal pregnant or not, initially NOT pregnant
-    protected boolean pregnant = false;
-    //whether or not the animal is infected
-    private boolean infected;
-    // number of days the animal can last after being infected
-    private int infectionDays;
-    // hunger level (number of days animal can last with no food)
-    protected int hungerLevel;
-    //Random
-    Random rand = Randomizer.getRandom();                   
+    // Store holding the age, sex, pregnancy, infection and hunger state of every animal
+    private final AnimalStateStore store = AnimalStateStore.getStore();
+    // This animal's id within the state store (a new one each time the animal is reused)
+    private int stateId;
+    // The species this animal eats, one bit per species id (see Species.getDiet)
+    private final int diet;
+    //Random streams, one per kind of decision (see RandomPurpose)
+    static final Random rand = Randomizer.getRandom(RandomPurpose.BEHAVIOUR);
+    private static final Random breedingRand = Randomizer.getRandom(RandomPurpose.BREEDING);
+    private static final Random infectionRand = Randomizer.getRandom(RandomPurpose.INFECTION);
+    private static final Random sexRand = Randomizer.getRandom(RandomPurpose.SEX);
 
     
     /**
-     * Getters for constants that differ between each animal
+     * Constructor for objects of class Animal.
+     * @param location The animal's location.
+     * @param species The animal's species.
      */
-    // max Animal age
-    protected abstract int deathAge();
-    // breeding age 
-    protected abstract int breedingAge();               // every animal needs to define its breeding age.
-    // breeding probability
-    protected abstract double breedingProbability();
-    //pregnancy duration
-    protected abstract int pregnancyDuration();
-    // max litter size
-    protected abstract int maxLitterSize();
-    // max food level
-    protected abstract int maxFoodLevel();
-    // active at what times of day.
-    protected abstract boolean isActiveAt(TimeOfDay currentTime);
-    // checks whether parameter organism is edible for the animal calling the method
-    protected abstract boolean isEdible(Organism organism);             
-    // the amount of food points an animal gains by eating this animal
-    protected abstract int foodValue();
-    // the initial food level an animal is given (amount of steps from the beginning of the simulation an animal can last eating no food and dying of no other diseases)
-    protected abstract int initialFoodLevel();
-    // chance of being infected from the beginning of the simulation
-    protected abstract double initialInfectionChance();
-    // probability of disease being spread to adjacent organisms
-    protected abstract double diseaseSpread();
-    // how long the animal survives before dying due to illness
-    protected abstract int diseaseDuration();
+    protected Animal(Location location, Species species)
+    {
+        super(location, species);
+        diet = species.getDiet();
+        start();
+    }
     
+    /**
+     * Bring a dead animal back to life at a new location, as though it had just been created.
+     * @param location The animal's new location.
+     */
+    @Override
+    protected void reuse(Location location)
+    {
+        super.reuse(location);
+        start();
+    }
     
     /**
-     * Constructor for objects of class Animal.
-     * @param location The animal's location.
+     * Registers the animal in the state store and gives it the state of a newborn.
      */
-    protected Animal(Location location)
+    private void start()
     {
-        super(location);
-        age = 0;
-        infected = false;
-        infectionDays = 0;
-        gender = chooseGender(); // assigned a random gender
-        hungerLevel = initialFoodLevel();
-        infected = isInitiallyInfected(); // animal may start of with infection
+        stateId = store.register(this);             // age, infection and pregnancy start at their defaults
+        store.setSex(stateId, chooseGender());      // assigned a random gender
+        store.setHungerLevel(stateId, getProfile().getInitialFoodLevel());
+        store.setInfected(stateId, isInitiallyInfected()); // animal may start of with infection
     }
     
     /**
@@ -82,7 +62,25 @@ public abstract class Animal extends Organism
      */
     public Sex chooseGender() {
         Sex[] genderValues = Sex.values();                          // 
-        return genderValues[rand.nextInt(genderValues.length)];
+        return genderValues[sexRand.nextInt(genderValues.length)];
+    }
+    
+    /**
+     * @return this animal's id within the state store of the simulation that created it
+     */
+    protected int getStateId()
+    {
+        return stateId;
+    }
+    
+    /**
+     * Checks whether an organism is edible for this animal, by testing its species' bit in the diet.
+     * @param organism - the organism that is being eaten
+     * @return boolean - whether or not the organism can be eaten or not
+     */
+    protected boolean isEdible(Organism organism)
+    {
+        return ((diet >>> organism.getSpeciesId()) & 1) != 0;
     }
     
     /**
@@ -90,7 +88,7 @@ public abstract class Animal extends Organism
      */
     public int getAge()
     {
-        return age;
+        return store.getAge(stateId);
     }
     
     /**
@@ -98,7 +96,78 @@ public abstract class Animal extends Organism
      */
     public Sex getSex()
     {        
-        return gender;
+        return store.getSex(stateId);
+    }
+    
+    /**
+     * @return current hunger level (number of steps the animal can last with no food)
+     */
+    protected int getHungerLevel()
+    {
+        return store.getHungerLevel(stateId);
+    }
+    
+    /**
+     * @return whether or not the animal is currently pregnant
+     */
+    protected boolean isPregnant()
+    {
+        return store.isPregnant(stateId);
+    }
+    
+    /**
+     * The step a pregnancy ends at is set when it starts (see AnimalStateStore), so nothing needs counting here.
+     * @return whether or not the pregnancy has reached its end
+     */
+    protected boolean isPregnancyDue()
+    {
+        return store.getPregnancyCounter(stateId) <= 0;
+    }
+    
+    /**
+     * Makes the pregnancy (if there is one) end a step later, for a step in which the animal never got as far
+     * as its pregnancy. Pregnancies are timed by the state store whether or not hunger is counted in bulk,
+     * so this is the same either way.
+     */
+    protected void postponePregnancy()
+    {
+        store.postponePregnancy(stateId);
+    }
+    
+    /**
+     * Advances hunger by one step, unless the state store does so for all animals in bulk.
+     * Deaths of old age and disease are scheduled in advance by the state store, which
+     * (like the bulk pass, for hunger) only marks the animal: it dies here, as it acts.
+     */
+    protected void updateCounters()
+    {
+        if (store.takeDeath(stateId)) {
+            setDead();
+        }
+        if (!store.isBulkUpdate()) {
+            decrementHunger();
+        }
+    }
+    
+    /**
+     * Applies the extra hunger caused by the weather for this step.
+     * When the state store updates all animals in bulk the hunger has already been taken, and an animal
+     * the extra hunger starved dies now, after spreading its infection, as it would counting for itself.
+     * @param weather the current weather
+     */
+    protected void applyWeatherHunger(WeatherType weather)
+    {
+        if (store.isBulkUpdate()) {
+            if (store.takeStarvation(stateId)) {
+                setDead();
+            }
+        }
+        else {
+            int hungerHit = getWeatherAffectedHungerHit(weather);
+            for (int i = 0; i < hungerHit; i++) {
+                decrementHunger();
+            }
+        }
     }
 
     /**
@@ -107,7 +176,7 @@ public abstract class Animal extends Organism
      */
     public void eat(int foodValue)
     {
-        hungerLevel += foodValue;
+        store.setHungerLevel(stateId, store.getHungerLevel(stateId) + foodValue);
     }
     
     /**
@@ -116,8 +185,7 @@ public abstract class Animal extends Organism
      */
     private boolean isInitiallyInfected() 
     {
-        infected = (rand.nextDouble() <= initialInfectionChance()); // if random value is smaller than assigned constant, it is infected.
-        return infected;
+        return (infectionRand.nextDouble() <= getProfile().getInitialInfectionChance()); // if random value is smaller than assigned constant, it is infected.
     }
     
     /**
@@ -125,7 +193,7 @@ public abstract class Animal extends Organism
      */
     public boolean isInfected()
     {
-        return infected;
+        return store.isInfected(stateId);
     }
     
     /**
@@ -133,38 +201,27 @@ public abstract class Animal extends Organism
      */
     protected void infect()
     {
-        if (!infected) {
-            infected = true;            // becomes infected
-            infectionDays = 0;          // just became infected so infected days is only 0
+        if (!isInfected()) {
+            store.infect(stateId);      // becomes infected, and will die once the disease has run its course
         }
     }
-
+    
+    
     /**
-     * Updates infection fields after each step.
+     * @return the spread probability after weather's effects (worked out once per species, see SpeciesProfile)
      */
-    protected void updateInfection()
+    protected double getWeatherAffectedDiseaseSpread(WeatherType weather)
     {
-        if (infected) {
-            infectionDays++;            // number of infected days increment
-            
-            // think about what other features we can add like hunger decrease, movement slowed?
-            
-            // if animal has reached max number of infection days then it will automatically pass away
-            if (infectionDays >= diseaseDuration()) {
-                setDead();
-            }
-        }
+        return getProfile().getDiseaseSpread(weather);
     }
     
-    
     /**
      * Weather affects the spread probability
+     * @param spreadChance the species' spread probability, before the weather
      * @return the spread probability after weather's effects
      */
-    protected double getWeatherAffectedDiseaseSpread(WeatherType weather)
+    static double weatherAffectedDiseaseSpread(double spreadChance, WeatherType weather)
     {
-        double spreadChance = diseaseSpread();
-        
         // if it is a storm then there is a greater chance of storm spreading
         if (weather == WeatherType.STORM) {
             spreadChance *= 2.0;
@@ -189,13 +246,19 @@ public abstract class Animal extends Organism
     protected void spreadInfection(Field field)
     {
         // if not infected or not alive then nothing happens
-        if (!infected || !isAlive()) {
+        if (!isInfected() || !isAlive()) {
             return;
         }
         
         
-        for (Location loc : field.getAdjacentLocations(getLocation())) {
-            Organism organism = field.getOrganismAt(loc);
+        // every neighbour gets its own chance of infection, so the order they are visited in does not matter
+        int index = field.indexOf(getLocation());
+        for (int direction = 0; direction < FieldLayout.MAX_ADJACENT; direction++) {
+            int next = field.getAdjacentIndex(index, direction);
+            if (next < 0) {
+                continue;       // no neighbour in this direction (edge of the field)
+            }
+            Organism organism = field.getOrganismAt(next);
             
             // check if organism is animal since plants cannot get infected (as of yet)
             if (organism instanceof Animal animal) {
@@ -207,7 +270,7 @@ public abstract class Animal extends Organism
                     WeatherType weather = field.getWeather();
                     double spreadChance = getWeatherAffectedDiseaseSpread(weather);
                     
-                    if (rand.nextDouble() <= spreadChance) {
+                    if (infectionRand.nextDouble() <= spreadChance) {
                         animal.infect();
                     }
                     
@@ -230,25 +293,13 @@ public abstract class Animal extends Organism
         return 0;
     }
     
-    /**
-     * Increment the age after each step
-     */
-    public void incrementAge()
-    {
-        age++;
-        // If the age exceeds or equals its death age, it dies.
-        if (age >= deathAge())
-        {
-            setDead();
-        }
-    }
-
     /**
      * Decrement hunger level after each step
      */
     protected void decrementHunger()
     {
-        hungerLevel--;
+        int hungerLevel = store.getHungerLevel(stateId) - 1;
+        store.setHungerLevel(stateId, hungerLevel);
         // If the hunger level reaches 0 (or less) , it dies.
         if (hungerLevel <= 0)
         {
@@ -256,14 +307,21 @@ public abstract class Animal extends Organism
         }
     }
     
+    /**
+     * @return The breeding probability after the effects of weather (worked out once per species, see SpeciesProfile)
+     */
+    protected double getWeatherAffectedBreedingProbability(WeatherType weather) 
+    {
+        return getProfile().getBreedingProbability(weather);
+    }
+    
     /**
      * Weather affects pregnancy aswell by changing the chances of breeding in different weather conditions
+     * @param breedChance the species' breeding probability, before the weather
      * @return The breeding probability after the effects of weather
      */
-    protected double getWeatherAffectedBreedingProbability(WeatherType weather) 
+    static double weatherAffectedBreedingProbability(double breedChance, WeatherType weather) 
     {
-        double breedChance = breedingProbability();
-        
         // storm heavy impact on breeding
         if (weather == WeatherType.STORM) {
             breedChance *= 0.5;     
@@ -299,23 +357,27 @@ public abstract class Animal extends Organism
     public boolean checkPregnancyPossible(Field currentField) 
     {
         // Checks whether the organism is a FEMALE, is above the breeding age, and not already pregnant.
-        if (gender.equals(Sex.MALE) || getAge() < breedingAge() || pregnancyCounter != -1) {return false;}
+        if (getSex() == Sex.MALE || getAge() < getProfile().getBreedingAge() || store.getPregnancyCounter(stateId) != -1) {return false;}
         
         
         // Checks whether they are lucky enough to reproduce.
         // weather affects the breeding probability
         WeatherType weather = currentField.getWeather();
         double adjustedBreedChance = getWeatherAffectedBreedingProbability(weather);
-        if (rand.nextDouble() > adjustedBreedChance) {return false;}
+        if (breedingRand.nextDouble() > adjustedBreedChance) {return false;}
         
         
-        Location currentLocation = this.getLocation();
-        List<Location> adjacentLocations = currentField.getAdjacentLocations(currentLocation);
+        int index = currentField.indexOf(this.getLocation());
         
         // Cycles through each adjacent location, and checks whether a valid partner is found under the basis that the partner:
         // is alive, is of the same species, is also above the breeding age and is a male
-        for (Location location : adjacentLocations) {
-            Organism organism = currentField.getOrganismAt(location);
+        // (any partner will do, so the neighbours are visited in a fixed order)
+        for (int direction = 0; direction < FieldLayout.MAX_ADJACENT; direction++) {
+            int next = currentField.getAdjacentIndex(index, direction);
+            if (next < 0) {
+                continue;
+            }
+            Organism organism = currentField.getOrganismAt(next);
             if (organism != null 
                 && organism.isAlive() 
                 && organism.getClass() == this.getClass() 
@@ -331,28 +393,53 @@ public abstract class Animal extends Organism
      * Starts the pregnancy, by changing fields to match the new condition.
      */
     public void startPregnancy() {
-        pregnancyCounter = pregnancyDuration();
-        pregnant = true;
-        numBirths = rand.nextInt(maxLitterSize()) + 1;
+        store.setPregnancyCounter(stateId, getProfile().getPregnancyDuration());
+        store.setPregnant(stateId, true);
+        store.setNumBirths(stateId, breedingRand.nextInt(getProfile().getMaxLitterSize()) + 1);
     }
     
     /**
      * Ends the pregnancy, returning the animal back to it's original state and creating offspring.
-     * @param The field for the next step, so offspring can be placed
+     * @param The current field, showing which neighbouring cells are free
+     * @param The field for the next step, where the offspring claim their cells
      */
-    public void endPregnancy(Field  nextFieldState) {
-        List<Location> freeLocations = nextFieldState.getFreeAdjacentLocations(getLocation()); // List of free locations
-        // Creates offspring until there are no free locations or the maximum number of offspring from one birth is reached for this animal
-        for (int b = 0; b < numBirths && ! freeLocations.isEmpty(); b++)
+    public void endPregnancy(Field currentField, Field  nextFieldState) {
+        int index = currentField.indexOf(getLocation());
+        int freeMask = currentField.getFreeAdjacentMask(index);
+        // the neighbouring cells with a living occupant, which are only used once the free ones run out;
+        // an offspring claiming one is only born if its occupant moves away (see Field.commitClaims)
+        int takenMask = currentField.getAdjacentMask(index) & ~freeMask;
+        // Creates offspring until there are no neighbouring cells left or the maximum number of offspring from one birth is reached for this animal
+        // (each offspring claims a random cell, which is then no longer open to its siblings)
+        int numBirths = store.getNumBirths(stateId);
+        for (int b = 0; b < numBirths && (freeMask | takenMask) != 0; b++)
         {
-            Location newLocation = freeLocations.remove(0); 
-            Animal offspring = createYoung(newLocation);
-            nextFieldState.place(offspring, newLocation);
+            int direction = currentField.pickAdjacentDirection(freeMask != 0 ? freeMask : takenMask);
+            freeMask &= ~(1 << direction);
+            takenMask &= ~(1 << direction);
+            int free = currentField.getAdjacentIndex(index, direction);
+            // a dead animal of the same species is reused if there is one
+            Location freeLocation = currentField.getLocation(free);
+            Animal offspring = (Animal) getOrganismPool().reuse(getSpecies(), freeLocation);
+            if (offspring == null) {
+                offspring = createYoung(freeLocation);
+            }
+            nextFieldState.claim(offspring, free, index, Field.CLAIM_NEWBORN);
         }
         // Preganncy fields set back to default
-        pregnancyCounter = - 1;
-        numBirths = 0;
-        pregnant = false;
+        store.setPregnancyCounter(stateId, -1);
+        store.setNumBirths(stateId, 0);
+        store.setPregnant(stateId, false);
+    }
+    
+    /**
+     * Marks the animal as dead and hands its slot in the state store back.
+     */
+    @Override
+    protected void setDead()
+    {
+        store.release(stateId);
+        super.setDead();
     }
     
     // Creates an object of the same class at a specified location
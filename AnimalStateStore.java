@@ -0,0 +1,671 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * AnimalStateStore keeps the changing state of every animal (age, hunger, pregnancy,
+ * infection and sex) in parallel primitive arrays rather than inside each Animal object.
+ * Every animal is given an id when it is created, and that id is its index into the arrays.
+ *
+ * Age, pregnancy and infection are not counted step by step. The store keeps its own count
+ * of steps (see beginStep), and records the step each animal was born at, its pregnancy
+ * ends at and its infection began at; the counters are worked out from those when asked
+ * for. An animal's death of old age or disease is known as soon as it is born or infected,
+ * so it is put on a timing wheel then, and the animal needs no attention until that step.
+ *
+ * Deaths are not carried out by the store: an animal due to die is put in a death mask,
+ * and consumes its entry when it next acts (see takeDeath), so it dies at the same point
+ * of the step as it would by counting for itself. Hunger does depend on what the animal
+ * eats, and is still counted down each step: either by each animal as it acts, or by a
+ * linear pass over the array at the start of the step (see advanceAll). That pass has no
+ * branches and no calls, so the JIT compiler can turn it into SIMD instructions. Starved
+ * animals die at the same point of the step either way (see advanceAll), and pregnancies,
+ * including those held up by a storm, are timed the same way; only the step a new
+ * infection counts from depends on which of the two is used (see infect).
+ *
+ * Ids of dead animals are recycled, but only two steps after the death. A dead animal can
+ * still be reached through the field it was last placed in until that field is cleared,
+ * so its slot must not be handed to a newborn before then.
+ *
+ * Each simulator has its own store. Animals are registered in the store of the simulator
+ * that created them, which is the store last used on the creating thread (see use).
+ *
+ * Animals may be registered, released and infected from several threads at once while a
+ * step is updated in parallel. No lock is taken for that: each thread hands out ids from a
+ * batch it has taken from the store, and keeps its releases and newly scheduled deaths to
+ * itself, in its own StoreLane. The lanes are gathered into the store at the start and end
+ * of every step. A thread only takes the store's lock when its batch of ids runs out. The
+ * arrays must not be replaced while threads are acting, so room for the step's newborns,
+ * and for the batches the threads may be holding, is reserved beforehand (see reserve).
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class AnimalStateStore
+{
+    // Number of slots the arrays start with; they double whenever they fill up.
+    private static final int INITIAL_CAPACITY = 1024;
+    // The store each thread registers new animals in; a thread which has not used one gets its own.
+    private static final ThreadLocal<AnimalStateStore> current = ThreadLocal.withInitial(AnimalStateStore::new);
+    // The Sex values, indexed by the ordinal stored in the gender array
+    private static final Sex[] SEXES = Sex.values();
+    // The due step of an animal which is not pregnant
+    private static final int NOT_PREGNANT = Integer.MIN_VALUE;
+    // The number of ids a thread takes from the store at once
+    private static final int ID_BATCH = 64;
+
+    // The animal owning each id (null if the id is not in use)
+    private Animal[] owners;
+    // Whether the animal owning each id is still alive (1) or not (0)
+    private int[] live;
+    // Per-animal counters
+    private int[] hungerLevel;
+    private int[] numBirths;
+    // The step each animal was born at, its pregnancy is due at (NOT_PREGNANT if it is not
+    // pregnant), its infection counts from, and it last acted at
+    private int[] bornAt;
+    private int[] dueAt;
+    private int[] infectedAt;
+    private int[] actedAt;
+    // Per-animal flags, 1 when set and 0 when not
+    private int[] pregnant;
+    private int[] infected;
+    // Set for every animal which dies of age, hunger or infection this step, as it begins
+    // to act, and (with the bulk pass) for every animal the weather's extra hunger starves,
+    // once it has spread its infection
+    private int[] dying;
+    private int[] starving;
+    // Per-animal sex, stored as the Sex ordinal
+    private byte[] gender;
+    // Species constants copied in on registration, for working out when animals die
+    private int[] deathAge;
+    private int[] diseaseDuration;
+
+    // One past the highest id handed out so far
+    private int size;
+    // Ids which are free to be handed out again
+    private int[] freeIds;
+    private int freeCount;
+    // Ids released during the current step and during the previous step
+    private int[] releasedNow, releasedBefore;
+    private int releasedNowCount, releasedBeforeCount;
+
+    // Whether hunger is counted down by advanceAll rather than by each animal's act
+    private boolean bulkUpdate;
+    // The number of steps begun since the store was created or cleared
+    private int step;
+    // The deaths of old age and disease still to come, by the step they fall due
+    private final TimingWheel deaths = new TimingWheel();
+    // The lane of every thread which has used the store, and the current thread's lane
+    private final List<StoreLane> lanes = new ArrayList<>();
+    private final ThreadLocal<StoreLane> lane = ThreadLocal.withInitial(this::newLane);
+
+    /**
+     * Create an empty store.
+     */
+    public AnimalStateStore()
+    {
+        allocate(INITIAL_CAPACITY);
+        bulkUpdate = false;
+    }
+
+    /**
+     * Provide the store new animals created on the current thread are registered in.
+     * @return The current animal state store.
+     */
+    public static AnimalStateStore getStore()
+    {
+        return current.get();
+    }
+
+    /**
+     * Make this the store new animals created on the current thread are registered in.
+     */
+    public void use()
+    {
+        current.set(this);
+    }
+
+    /**
+     * Give a newly created animal an id and store its species constants.
+     * All counters of the new id start at their defaults (zero, not pregnant, not infected).
+     *
+     * @param animal The animal being created.
+     * @return The id of the animal in this store.
+     */
+    public int register(Animal animal)
+    {
+        StoreLane ids = lane.get();
+        int id = ids.takeId();
+        if(id < 0) {
+            id = takeBatch(ids);
+        }
+        owners[id] = animal;
+        live[id] = 1;
+        hungerLevel[id] = 0;
+        numBirths[id] = 0;
+        bornAt[id] = step;
+        dueAt[id] = NOT_PREGNANT;
+        infectedAt[id] = step;
+        // An animal born during a step first acts in the next one
+        actedAt[id] = step;
+        pregnant[id] = 0;
+        infected[id] = 0;
+        dying[id] = 0;
+        starving[id] = 0;
+        gender[id] = 0;
+        deathAge[id] = animal.getProfile().getDeathAge();
+        diseaseDuration[id] = animal.getProfile().getDiseaseDuration();
+        scheduleDeath(id, step + deathAge[id]);
+        return id;
+    }
+
+    /**
+     * Give a thread's lane a batch of free ids, taking new ones at the end of the arrays
+     * once the free ids run out, and hand out the first of them.
+     *
+     * @param ids The lane of the current thread, which has no ids left.
+     * @return An id for the current thread to use.
+     */
+    private synchronized int takeBatch(StoreLane ids)
+    {
+        for(int n = 0; n < ID_BATCH; n++) {
+            if(freeCount > 0) {
+                ids.addId(freeIds[--freeCount]);
+            }
+            else {
+                if(size == owners.length) {
+                    grow();
+                }
+                ids.addId(size++);
+            }
+        }
+        return ids.takeId();
+    }
+
+    /**
+     * Create the lane of a thread which has not used the store before.
+     *
+     * @return The new lane.
+     */
+    private StoreLane newLane()
+    {
+        StoreLane newLane = new StoreLane();
+        synchronized(lanes) {
+            lanes.add(newLane);
+        }
+        return newLane;
+    }
+
+    /**
+     * Gather every thread's lane into the store: ids not handed out become free again,
+     * released ids join those released this step, and scheduled deaths go on the wheel.
+     * Only called while no thread is acting.
+     */
+    private void gatherLanes()
+    {
+        for(StoreLane threadLane : lanes) {
+            threadLane.drain(this::free, this::addReleased, deaths);
+        }
+    }
+
+    /**
+     * Add an id to the free ids.
+     *
+     * @param id The id.
+     */
+    private void free(int id)
+    {
+        if(freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Add an id to those released during the current step.
+     *
+     * @param id The id.
+     */
+    private void addReleased(int id)
+    {
+        if(releasedNowCount == releasedNow.length) {
+            releasedNow = Arrays.copyOf(releasedNow, releasedNow.length * 2);
+        }
+        releasedNow[releasedNowCount++] = id;
+    }
+
+    /**
+     * Release the id of an animal which has died. The id is only reused two steps later.
+     *
+     * @param id The id of the dead animal.
+     */
+    public void release(int id)
+    {
+        if(live[id] == 0) {
+            return;
+        }
+        live[id] = 0;
+        lane.get().release(id);
+    }
+
+    /**
+     * Make sure the given number of animals can be registered without the arrays growing,
+     * while the given number of threads each hold a batch of ids.
+     *
+     * @param count The number of animals which may be registered.
+     * @param threads The number of threads which may register them.
+     */
+    public void reserve(int count, int threads)
+    {
+        while(owners.length - size + freeCount < count + threads * ID_BATCH) {
+            grow();
+        }
+    }
+
+    /**
+     * Mark the end of a simulation step. Ids released two steps ago become free.
+     */
+    public void endStep()
+    {
+        gatherLanes();
+        for(int i = 0; i < releasedBeforeCount; i++) {
+            int id = releasedBefore[i];
+            owners[id] = null;
+            free(id);
+        }
+        int[] recycled = releasedBefore;
+        releasedBefore = releasedNow;
+        releasedBeforeCount = releasedNowCount;
+        releasedNow = recycled;
+        releasedNowCount = 0;
+    }
+
+    /**
+     * Forget every animal in the store (used when the simulation is reset).
+     */
+    public void clear()
+    {
+        Arrays.fill(owners, 0, size, null);
+        Arrays.fill(live, 0, size, 0);
+        size = 0;
+        freeCount = 0;
+        releasedNowCount = 0;
+        releasedBeforeCount = 0;
+        step = 0;
+        deaths.clear();
+        for(StoreLane threadLane : lanes) {
+            threadLane.clear();
+        }
+    }
+
+    /**
+     * Begin a new simulation step: move the store's count of steps on, and put every animal
+     * which reaches its death age or the end of its disease during the step in the death
+     * mask. Called at the start of every step, before any animal acts.
+     */
+    public void beginStep()
+    {
+        gatherLanes();
+        step++;
+        deaths.takeDue(step, this::checkDeath);
+    }
+
+    /**
+     * Put an animal in the death mask if it is alive and has reached its death age or the
+     * end of its disease. An entry on the wheel may be out of date, so this is checked again.
+     *
+     * @param id The id of the animal.
+     */
+    private void checkDeath(int id)
+    {
+        if(live[id] != 0 && (step - bornAt[id] >= deathAge[id]
+                             || (infected[id] != 0 && step - infectedAt[id] >= diseaseDuration[id]))) {
+            dying[id] = 1;
+        }
+    }
+
+    /**
+     * Arrange for an animal to be checked for death at a step. If that step has already
+     * begun the animal is checked now. Otherwise the entry waits in the current thread's
+     * lane until the lanes are next gathered, which is before the step begins.
+     *
+     * @param id The id of the animal.
+     * @param dueStep The step at which it may die.
+     */
+    private void scheduleDeath(int id, int dueStep)
+    {
+        if(dueStep > step) {
+            lane.get().schedule(id, dueStep);
+        }
+        else {
+            checkDeath(id);
+        }
+    }
+
+    /**
+     * Count down the hunger of every living animal by one step in a single pass, including
+     * the extra hunger caused by the weather. As when each animal counts for itself, an
+     * animal starved by the step's own hunger dies as it begins to act, and is added to the
+     * death mask alongside those beginStep found at the end of their lives; one starved only
+     * by the weather's extra hunger dies after it has spread its infection (see takeStarvation).
+     *
+     * @param weather The weather during this step.
+     */
+    public void advanceAll(WeatherType weather)
+    {
+        // Storms and clouds burn an extra point of hunger, as in Animal.getWeatherAffectedHungerHit
+        int weatherHit = 0;
+        if((weather == WeatherType.STORM) || (weather == WeatherType.CLOUDY)) {
+            weatherHit = 1;
+        }
+        advance(weatherHit);
+    }
+
+    /**
+     * Starve every living animal, and mark those whose hunger has run out: in the death
+     * mask if the step's own point of hunger was enough, and in the starving mask if the
+     * hunger has run out once the weather's is taken as well.
+     *
+     * Dead and unused ids are multiplied or masked by a live flag of 0, so they do not
+     * change. The tests use the sign bit of (hunger level - 1), which is negative once the
+     * hunger level reaches 0. The work is split into short loops because the JIT only
+     * turns a loop into SIMD instructions if its body is small enough to unroll.
+     */
+    private void advance(int weatherHit)
+    {
+        int count = size;
+        int hungerHit = 1 + weatherHit;
+        int[] live = this.live, hungerLevel = this.hungerLevel;
+        for(int id = 0; id < count; id++) {
+            hungerLevel[id] -= hungerHit * live[id];
+        }
+        int[] dying = this.dying;
+        for(int id = 0; id < count; id++) {
+            dying[id] |= ((hungerLevel[id] + weatherHit - 1) >>> 31) & live[id];
+        }
+        int[] starving = this.starving;
+        for(int id = 0; id < count; id++) {
+            starving[id] = ((hungerLevel[id] - 1) >>> 31) & live[id];
+        }
+    }
+
+    /**
+     * Return whether the bulk pass found that the weather's extra hunger starves an animal
+     * this step, and clear its entry of the starving mask.
+     *
+     * @param id The id of the animal.
+     * @return true if the animal has starved.
+     */
+    public boolean takeStarvation(int id)
+    {
+        boolean starves = starving[id] != 0;
+        starving[id] = 0;
+        return starves;
+    }
+
+    /**
+     * Return whether an animal dies this step of age, disease or (with the bulk pass)
+     * hunger, and clear its entry of the death mask. Also records that the animal has
+     * acted this step.
+     *
+     * @param id The id of the animal.
+     * @return true if the animal has died of age, hunger or infection.
+     */
+    public boolean takeDeath(int id)
+    {
+        boolean dies = dying[id] != 0;
+        dying[id] = 0;
+        actedAt[id] = step;
+        return dies;
+    }
+
+    /**
+     * @return Whether hunger is counted down in bulk by advanceAll.
+     */
+    public boolean isBulkUpdate()
+    {
+        return bulkUpdate;
+    }
+
+    /**
+     * Choose whether hunger is counted down in bulk by advanceAll or by each animal.
+     * @param bulkUpdate true to use the bulk pass.
+     */
+    public void setBulkUpdate(boolean bulkUpdate)
+    {
+        this.bulkUpdate = bulkUpdate;
+    }
+
+    /**
+     * @param id The id of an animal.
+     * @return The age of that animal.
+     */
+    public int getAge(int id)
+    {
+        return step - bornAt[id];
+    }
+
+    /**
+     * Set the age of an animal, and reschedule its death of old age to match.
+     * @param id The id of the animal.
+     * @param value The new value.
+     */
+    public void setAge(int id, int value)
+    {
+        bornAt[id] = step - value;
+        scheduleDeath(id, bornAt[id] + deathAge[id]);
+    }
+
+    /**
+     * @param id The id of an animal.
+     * @return The hunger level of that animal.
+     */
+    public int getHungerLevel(int id)
+    {
+        return hungerLevel[id];
+    }
+
+    /**
+     * Set the hunger level of an animal.
+     * @param id The id of the animal.
+     * @param value The new value.
+     */
+    public void setHungerLevel(int id, int value)
+    {
+        hungerLevel[id] = value;
+    }
+
+    /**
+     * @param id The id of an animal.
+     * @return The number of steps until that animal's pregnancy ends, or -1 if it has none.
+     */
+    public int getPregnancyCounter(int id)
+    {
+        return dueAt[id] == NOT_PREGNANT ? -1 : dueAt[id] - step;
+    }
+
+    /**
+     * Set the number of steps until an animal's pregnancy ends.
+     * @param id The id of the animal.
+     * @param value The new value, or -1 if it has no pregnancy.
+     */
+    public void setPregnancyCounter(int id, int value)
+    {
+        dueAt[id] = value < 0 ? NOT_PREGNANT : step + value;
+    }
+
+    /**
+     * Make an animal's pregnancy, if it has one, end a step later.
+     * @param id The id of the animal.
+     */
+    public void postponePregnancy(int id)
+    {
+        if(dueAt[id] != NOT_PREGNANT) {
+            dueAt[id]++;
+        }
+    }
+
+    /**
+     * @param id The id of an animal.
+     * @return The number of expected births of that animal.
+     */
+    public int getNumBirths(int id)
+    {
+        return numBirths[id];
+    }
+
+    /**
+     * Set the number of expected births of an animal.
+     * @param id The id of the animal.
+     * @param value The new value.
+     */
+    public void setNumBirths(int id, int value)
+    {
+        numBirths[id] = value;
+    }
+
+    /**
+     * @param id The id of an animal.
+     * @return The number of infected steps of that animal.
+     */
+    public int getInfectionDays(int id)
+    {
+        return infected[id] != 0 ? step - infectedAt[id] : 0;
+    }
+
+    /**
+     * Set the number of infected steps of an animal, and reschedule its death of the
+     * disease to match if it is infected.
+     * @param id The id of the animal.
+     * @param value The new value.
+     */
+    public void setInfectionDays(int id, int value)
+    {
+        infectedAt[id] = step - value;
+        if(infected[id] != 0) {
+            scheduleDeath(id, infectedAt[id] + diseaseDuration[id]);
+        }
+    }
+
+    /**
+     * Infect an animal from now on, and schedule its death of the disease. An animal which
+     * has yet to act this step counts this step as its first day of infection, as it did
+     * when each animal counted its own days; the bulk pass always started from the next step.
+     * @param id The id of the animal.
+     */
+    public void infect(int id)
+    {
+        infected[id] = 1;
+        infectedAt[id] = (!bulkUpdate && actedAt[id] != step) ? step - 1 : step;
+        scheduleDeath(id, infectedAt[id] + diseaseDuration[id]);
+    }
+
+    /**
+     * @param id The id of an animal.
+     * @return The pregnant flag of that animal.
+     */
+    public boolean isPregnant(int id)
+    {
+        return pregnant[id] != 0;
+    }
+
+    /**
+     * Set the pregnant flag of an animal.
+     * @param id The id of the animal.
+     * @param value The new value.
+     */
+    public void setPregnant(int id, boolean value)
+    {
+        pregnant[id] = value ? 1 : 0;
+    }
+
+    /**
+     * @param id The id of an animal.
+     * @return The infected flag of that animal.
+     */
+    public boolean isInfected(int id)
+    {
+        return infected[id] != 0;
+    }
+
+    /**
+     * Set the infected flag of an animal.
+     * @param id The id of the animal.
+     * @param value The new value.
+     */
+    public void setInfected(int id, boolean value)
+    {
+        infected[id] = value ? 1 : 0;
+        if(value) {
+            scheduleDeath(id, infectedAt[id] + diseaseDuration[id]);
+        }
+    }
+
+    /**
+     * @param id The id of an animal.
+     * @return The sex of that animal.
+     */
+    public Sex getSex(int id)
+    {
+        return SEXES[gender[id]];
+    }
+
+    /**
+     * Set the sex of an animal.
+     * @param id The id of the animal.
+     * @param value The new value.
+     */
+    public void setSex(int id, Sex value)
+    {
+        gender[id] = (byte) value.ordinal();
+    }
+
+    /**
+     * Double the capacity of every array.
+     */
+    private void grow()
+    {
+        int capacity = owners.length * 2;
+        owners = Arrays.copyOf(owners, capacity);
+        live = Arrays.copyOf(live, capacity);
+        hungerLevel = Arrays.copyOf(hungerLevel, capacity);
+        numBirths = Arrays.copyOf(numBirths, capacity);
+        bornAt = Arrays.copyOf(bornAt, capacity);
+        dueAt = Arrays.copyOf(dueAt, capacity);
+        infectedAt = Arrays.copyOf(infectedAt, capacity);
+        actedAt = Arrays.copyOf(actedAt, capacity);
+        pregnant = Arrays.copyOf(pregnant, capacity);
+        infected = Arrays.copyOf(infected, capacity);
+        dying = Arrays.copyOf(dying, capacity);
+        starving = Arrays.copyOf(starving, capacity);
+        gender = Arrays.copyOf(gender, capacity);
+        deathAge = Arrays.copyOf(deathAge, capacity);
+        diseaseDuration = Arrays.copyOf(diseaseDuration, capacity);
+    }
+
+    /**
+     * Allocate every array with the given capacity.
+     */
+    private void allocate(int capacity)
+    {
+        owners = new Animal[capacity];
+        live = new int[capacity];
+        hungerLevel = new int[capacity];
+        numBirths = new int[capacity];
+        bornAt = new int[capacity];
+        dueAt = new int[capacity];
+        infectedAt = new int[capacity];
+        actedAt = new int[capacity];
+        pregnant = new int[capacity];
+        infected = new int[capacity];
+        dying = new int[capacity];
+        starving = new int[capacity];
+        gender = new byte[capacity];
+        deathAge = new int[capacity];
+        diseaseDuration = new int[capacity];
+        freeIds = new int[capacity];
+        releasedNow = new int[capacity];
+        releasedBefore = new int[capacity];
+    }
+}
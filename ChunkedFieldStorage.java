@@ -0,0 +1,212 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * ChunkedFieldStorage divides a field into square chunks of FieldLayout.CHUNK_SIZE by
+ * FieldLayout.CHUNK_SIZE cells. A chunk's cells and occupancy bits are only allocated
+ * when the first organism lands in it, and are released again once the chunk has stayed
+ * empty through a whole clear of the field. This lets very large oceans which are mostly
+ * empty water fit in memory.
+ *
+ * Cells are still addressed by their row-major index, so neighbours are found the same
+ * way as for a dense field and naturally cross from one chunk into the next.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class ChunkedFieldStorage extends FieldStorage
+{
+    // The shape of the field being stored
+    private final FieldLayout layout;
+    // The width of the field, and the number of chunks across it
+    private final int width, chunksAcross;
+    // The cells of each chunk (null while the chunk is not allocated), row by row within the chunk
+    private final Organism[][] chunks;
+    // The occupancy bits of each chunk, one word per row of the chunk
+    private final long[][] chunkBits;
+    // Whether anything has been put in each chunk since the last clear
+    private final boolean[] chunkUsed;
+    // Atomic access to the bit words, since the edge cells of a chunk can be written by
+    // threads updating the tiles on either side of it
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Create empty storage for a field with the given layout.
+     *
+     * @param layout The shape of the field.
+     */
+    public ChunkedFieldStorage(FieldLayout layout)
+    {
+        this.layout = layout;
+        width = layout.getWidth();
+        chunksAcross = layout.getChunksAcross();
+        int chunkCount = chunksAcross * layout.getChunksDown();
+        chunks = new Organism[chunkCount][];
+        chunkBits = new long[chunkCount][];
+        chunkUsed = new boolean[chunkCount];
+    }
+
+    /**
+     * Return the organism in a cell.
+     *
+     * @param index The index of the cell.
+     * @return The organism in that cell, or null if there is none.
+     */
+    @Override
+    public Organism get(int index)
+    {
+        int row = index / width;
+        int col = index - row * width;
+        Organism[] chunk = chunks[chunkOf(row, col)];
+        if(chunk == null) {
+            return null;
+        }
+        return chunk[cellOf(row, col)];
+    }
+
+    /**
+     * Put an organism in a cell, allocating the cell's chunk if it is not already.
+     *
+     * @param index The index of the cell.
+     * @param anOrganism The organism to store.
+     */
+    @Override
+    public void set(int index, Organism anOrganism)
+    {
+        int row = index / width;
+        int col = index - row * width;
+        int chunkIndex = chunkOf(row, col);
+        Organism[] chunk = chunks[chunkIndex];
+        if(chunk == null) {
+            if(anOrganism == null) {
+                return;
+            }
+            chunk = allocate(chunkIndex);
+        }
+        if(anOrganism != null) {
+            chunkUsed[chunkIndex] = true;
+        }
+        chunk[cellOf(row, col)] = anOrganism;
+    }
+
+    /**
+     * @param index The index of a cell.
+     * @return Whether the occupancy bit of that cell is set.
+     */
+    @Override
+    public boolean isOccupied(int index)
+    {
+        if(index < 0 || index >= layout.getSize()) {
+            return false;
+        }
+        int row = index / width;
+        int col = index - row * width;
+        long[] bits = chunkBits[chunkOf(row, col)];
+        return bits != null
+            && (bits[row & (FieldLayout.CHUNK_SIZE - 1)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Set or clear the occupancy bit of a cell.
+     *
+     * @param index The index of the cell.
+     * @param occupied The new value of the bit.
+     */
+    @Override
+    public void setOccupied(int index, boolean occupied)
+    {
+        int row = index / width;
+        int col = index - row * width;
+        int chunkIndex = chunkOf(row, col);
+        long[] bits = chunkBits[chunkIndex];
+        if(bits == null) {
+            if(!occupied) {
+                return;
+            }
+            allocate(chunkIndex);
+            bits = chunkBits[chunkIndex];
+        }
+        int word = row & (FieldLayout.CHUNK_SIZE - 1);
+        if(occupied) {
+            WORDS.getAndBitwiseOr(bits, word, 1L << col);
+        }
+        else {
+            WORDS.getAndBitwiseAnd(bits, word, ~(1L << col));
+        }
+    }
+
+    /**
+     * Return the occupancy bits of three cells which follow each other in a row.
+     *
+     * @param start The index of the first of the three cells.
+     * @return The three occupancy bits, lowest bit first.
+     */
+    @Override
+    public int occupiedBits(int start)
+    {
+        int bits = 0;
+        for(int i = 0; i < 3; i++) {
+            if(isOccupied(start + i)) {
+                bits |= 1 << i;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Empty every cell. Chunks which nothing has been put in since the last clear
+     * are released; the others are emptied and kept for reuse.
+     */
+    @Override
+    public void clear()
+    {
+        for(int chunkIndex = 0; chunkIndex < chunks.length; chunkIndex++) {
+            if(chunks[chunkIndex] != null) {
+                if(!chunkUsed[chunkIndex]) {
+                    chunks[chunkIndex] = null;
+                    chunkBits[chunkIndex] = null;
+                }
+                else {
+                    Arrays.fill(chunks[chunkIndex], null);
+                    Arrays.fill(chunkBits[chunkIndex], 0);
+                    chunkUsed[chunkIndex] = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Allocate the cells and occupancy bits of a chunk, unless another thread got there first.
+     *
+     * @param chunkIndex The chunk to allocate.
+     * @return The cells of the chunk.
+     */
+    private synchronized Organism[] allocate(int chunkIndex)
+    {
+        Organism[] chunk = chunks[chunkIndex];
+        if(chunk == null) {
+            chunkBits[chunkIndex] = new long[FieldLayout.CHUNK_SIZE];
+            chunk = new Organism[FieldLayout.CHUNK_SIZE * FieldLayout.CHUNK_SIZE];
+            chunks[chunkIndex] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * @return The index of the chunk holding a cell.
+     */
+    private int chunkOf(int row, int col)
+    {
+        return (row >> FieldLayout.CHUNK_SHIFT) * chunksAcross + (col >> FieldLayout.CHUNK_SHIFT);
+    }
+
+    /**
+     * @return The position of a cell within its chunk.
+     */
+    private static int cellOf(int row, int col)
+    {
+        int mask = FieldLayout.CHUNK_SIZE - 1;
+        return ((row & mask) << FieldLayout.CHUNK_SHIFT) | (col & mask);
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * The Claim record holds one claim on a cell of a field which has been taken out of the
+ * field before being settled (see Field.takeClaims): the organism making it, the cell
+ * claimed, the cell the claimant (or its parent) is in, and the claim's key, which orders
+ * the claims on a cell.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public record Claim(Organism claimant, int target, int origin, long key)
+{
+    /**
+     * @return The claim's priority, one of the CLAIM_ priorities of Field.
+     */
+    public int priority()
+    {
+        return (int) (key >>> 56);
+    }
+}
@@ -0,0 +1,119 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * DenseFieldStorage keeps every cell of a field in one flat array, laid out row by
+ * row, with the occupancy bits packed 64 to a word in the same order. This is the
+ * fastest storage for fields which are mostly full.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class DenseFieldStorage extends FieldStorage
+{
+    // Organism stored at each cell, laid out row by row (row * width + col)
+    private final Organism[] cells;
+    // One bit per cell, in the same order as the cells
+    private final long[] occupied;
+    // Atomic access to the bit words, since the cells sharing a word can belong to
+    // tiles which are being updated by different threads
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Create empty storage for a field with the given number of cells.
+     *
+     * @param size The number of cells in the field.
+     */
+    public DenseFieldStorage(int size)
+    {
+        cells = new Organism[size];
+        occupied = new long[(size + 63) / 64];
+    }
+
+    /**
+     * Return the organism in a cell.
+     *
+     * @param index The index of the cell.
+     * @return The organism in that cell, or null if there is none.
+     */
+    @Override
+    public Organism get(int index)
+    {
+        return cells[index];
+    }
+
+    /**
+     * Put an organism in a cell, replacing anything already there.
+     *
+     * @param index The index of the cell.
+     * @param anOrganism The organism to store.
+     */
+    @Override
+    public void set(int index, Organism anOrganism)
+    {
+        cells[index] = anOrganism;
+    }
+
+    /**
+     * @param index The index of a cell.
+     * @return Whether the occupancy bit of that cell is set.
+     */
+    @Override
+    public boolean isOccupied(int index)
+    {
+        return (occupied[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Set or clear the occupancy bit of a cell.
+     *
+     * @param index The index of the cell.
+     * @param isOccupied The new value of the bit.
+     */
+    @Override
+    public void setOccupied(int index, boolean isOccupied)
+    {
+        if(isOccupied) {
+            WORDS.getAndBitwiseOr(occupied, index >>> 6, 1L << index);
+        }
+        else {
+            WORDS.getAndBitwiseAnd(occupied, index >>> 6, ~(1L << index));
+        }
+    }
+
+    /**
+     * Return the occupancy bits of three cells which follow each other in a row,
+     * read straight out of the bit words.
+     *
+     * @param start The index of the first of the three cells (may be -1 for the very first cell).
+     * @return The three occupancy bits, lowest bit first.
+     */
+    @Override
+    public int occupiedBits(int start)
+    {
+        if(start < 0) {
+            return (occupiedBits(0) << -start) & 7;
+        }
+        int word = start >>> 6;
+        int shift = start & 63;
+        if(word >= occupied.length) {
+            return 0;
+        }
+        long bits = occupied[word] >>> shift;
+        if(shift > 61 && word + 1 < occupied.length) {
+            bits |= occupied[word + 1] << (64 - shift);
+        }
+        return (int) bits & 7;
+    }
+
+    /**
+     * Empty every cell and clear every occupancy bit.
+     */
+    @Override
+    public void clear()
+    {
+        Arrays.fill(cells, null);
+        Arrays.fill(occupied, 0);
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * EnsembleRunner runs many independent replicates of the simulation, one per seed, side
+ * by side on a pool of threads in a single program. Every replicate is a Simulator with
+ * its own random numbers, clock, weather and animal store and no window, so replicates
+ * cannot affect one another and all of them share the same warmed-up JVM.
+ *
+ * A replicate's result depends only on its seed, not on how many run at once.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class EnsembleRunner
+{
+    // The dimensions of each replicate's field
+    private final int depth, width;
+    // The number of steps each replicate runs for (fewer if it stops being viable)
+    private final int steps;
+    // The number of replicates run at once
+    private final int threads;
+    // Whether the replicates count animal hunger down in bulk (see Simulator.setBulkUpdate)
+    private final boolean bulkUpdate;
+
+    /**
+     * Create a runner for replicates of the given size and length.
+     *
+     * @param depth The depth of each replicate's field.
+     * @param width The width of each replicate's field.
+     * @param steps The number of steps to run each replicate for.
+     * @param threads The number of replicates to run at once.
+     */
+    public EnsembleRunner(int depth, int width, int steps, int threads)
+    {
+        this(depth, width, steps, threads, false);
+    }
+
+    /**
+     * Create a runner for replicates of the given size and length, choosing how they
+     * count animal hunger down.
+     *
+     * @param depth The depth of each replicate's field.
+     * @param width The width of each replicate's field.
+     * @param steps The number of steps to run each replicate for.
+     * @param threads The number of replicates to run at once.
+     * @param bulkUpdate Whether the replicates count hunger down in one pass per step.
+     */
+    public EnsembleRunner(int depth, int width, int steps, int threads, boolean bulkUpdate)
+    {
+        this.depth = depth;
+        this.width = width;
+        this.steps = steps;
+        this.threads = threads;
+        this.bulkUpdate = bulkUpdate;
+    }
+
+    /**
+     * Run one replicate per seed and wait for all of them to finish.
+     *
+     * @param seeds The seed of each replicate.
+     * @return The result of each replicate, in the same order as the seeds.
+     */
+    public List<ReplicateResult> run(long... seeds)
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ReplicateResult>> running = new ArrayList<>();
+            for(long seed : seeds) {
+                running.add(pool.submit(() -> runReplicate(seed)));
+            }
+            List<ReplicateResult> results = new ArrayList<>();
+            for(Future<ReplicateResult> replicate : running) {
+                results.add(replicate.get());
+            }
+            return results;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the ensemble", e);
+        }
+        catch(ExecutionException e) {
+            throw new IllegalStateException("A replicate failed", e.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Run a single replicate to the end.
+     *
+     * @param seed The seed of the replicate.
+     * @return Its result.
+     */
+    private ReplicateResult runReplicate(long seed)
+    {
+        Simulator simulator = new Simulator(depth, width, seed, false);
+        try {
+            simulator.setBulkUpdate(bulkUpdate);
+            simulator.simulate(steps);
+            Field field = simulator.getField();
+            Map<Species, Integer> population = new EnumMap<>(Species.class);
+            for(Species species : Species.values()) {
+                population.put(species, field.getLiveCount(species));
+            }
+            return new ReplicateResult(seed, simulator.getStepCount(), population);
+        }
+        finally {
+            simulator.close();
+        }
+    }
+}
@@ -10,7 +10,15 @@ import java.util.*;
  */
 public class Field
 {
-    private static final Random rand = Randomizer.getRandom();
+    // Priorities of claims on a cell (see claim); the higher claim wins.
+    // Organisms staying where they are always get their own cell.
+    public static final int CLAIM_SEEDLING = 1;
+    public static final int CLAIM_NEWBORN = 2;
+    public static final int CLAIM_MOVE = 3;
+    public static final int CLAIM_STAY = 4;
+    
+    private static final Random rand = Randomizer.getRandom(RandomPurpose.MOVEMENT);
+    private static final Random claimRand = Randomizer.getRandom(RandomPurpose.CLAIM);
     
     // Current weather condition which affects this field
     private WeatherType weather = WeatherType.CLEAR;
@@ -18,11 +26,58 @@ public class Field
     // The dimensions of the field.
     private final int depth, width;
     
-    // Mapping from location to organism stored at that location
-    private final Map<Location, Organism> field = new HashMap<>();
+    // The shape of the field, shared with other fields of the same size
+    private final FieldLayout layout;
+    
+    // The organism stored at each cell, and one bit per cell which is set while the cell
+    // holds a living organism. The bits are kept up to date by place, clear and markDead
+    // so free neighbours can be found without visiting them. Tiled layouts are stored
+    // chunk by chunk so that empty parts of the ocean take no memory, and the largest
+    // layouts are kept in a memory-mapped file outside the heap.
+    private final FieldStorage storage;
+    
+    // The number of living organisms of each species in the field, indexed by
+    // species id, and of each trophic role, indexed by TrophicRole ordinal. These
+    // are updated as organisms are placed and die, so reading them costs nothing.
+    private final int[] liveCounts = new int[Species.count()];
+    private final int[] liveRoleCounts = new int[TrophicRole.values().length];
     
-    // List of organisms currently known to the field
+    // List of organisms currently known to the field. Every organism remembers its slot
+    // in this list so it can be removed in constant time (see removeOrganism). Organisms
+    // which have died are swept out of it in one pass when the field is frozen.
+    // Organisms are only placed while claims are committed, on a single thread, and
+    // deaths leave a frozen field untouched, so the list and the live counts need no
+    // lock even when the organisms act on several threads (see ParallelStepper).
     private final List<Organism> organisms = new ArrayList<>();
+    // The slot recorded for an organism which has been swept out of the list
+    private static final int SWEPT = -2;
+    
+    // Claims made on cells of this field during a step and not yet committed. Each thread
+    // appends its claims to its own buffer, so claiming takes no lock; the buffers are
+    // registered with the field the first time a thread claims one of its cells.
+    private final List<ClaimBuffer> claimBuffers = new ArrayList<>();
+    private final ThreadLocal<ClaimBuffer> threadClaims = ThreadLocal.withInitial(this::newClaimBuffer);
+    
+    // The claims of a step gathered from every buffer while they are committed: the claimed
+    // cell, the cell the claimant came from, the claim's key (priority, then a random
+    // tie-break, then the origin) and the claimant. Along with the working arrays of the
+    // commit, these are kept from step to step and only grow.
+    private int claimCount;
+    private int[] claimTargets = new int[0];
+    private int[] claimOrigins = new int[0];
+    private long[] claimKeys = new long[0];
+    private Organism[] claimants = new Organism[0];
+    // The contested claims, sorted by cell (see commitClaims)
+    private long[] claimOrder = new long[0];
+    // Whether each claim has won its cell, or is sent back to its origin
+    private boolean[] claimWon = new boolean[0];
+    private boolean[] claimBack = new boolean[0];
+    // The movers still to be sent back to their origins
+    private int[] returning = new int[0];
+    
+    // While frozen, deaths do not free cells, so every organism sees the cells
+    // as they were at the start of the step (see freeze).
+    private boolean frozen;
 
     /**
      * Represent a field of the given dimensions.
@@ -32,8 +87,29 @@ public class Field
      */
     public Field(int depth, int width)
     {
-        this.depth = depth;
-        this.width = width;
+        this(new FieldLayout(depth, width));
+    }
+    
+    /**
+     * Represent an empty field with the given layout. Fields made from the same
+     * layout share its Location objects.
+     * 
+     * @param layout The shape of the field.
+     */
+    public Field(FieldLayout layout)
+    {
+        this.layout = layout;
+        depth = layout.getDepth();
+        width = layout.getWidth();
+        if(layout.isOutOfCore()) {
+            storage = new MappedFieldStorage(layout.getSize());
+        }
+        else if(layout.isTiled()) {
+            storage = new ChunkedFieldStorage(layout);
+        }
+        else {
+            storage = new DenseFieldStorage(layout.getSize());
+        }
     }
 
     /**
@@ -41,20 +117,379 @@ public class Field
      * If there is already an animal at the location it will
      * be replaced.
      * 
-     * @param anAnimal The organism to be placed.
+     * @param anOrganism The organism to be placed.
      * @param location Where to place the organism.
      */
     public void place(Organism anOrganism, Location location)
     {
         assert location != null;
-        Object other = field.get(location);
+        place(anOrganism, indexOf(location));
+    }
+    
+    /**
+     * Place an organism in the cell with the given index.
+     * If there is already an organism in the cell it will be replaced.
+     * 
+     * @param anOrganism The organism to be placed.
+     * @param index The index of the cell.
+     */
+    public void place(Organism anOrganism, int index)
+    {
+        Organism other = storage.get(index);
         if(other != null) {
-            organisms.remove(other);
+            removeOrganism(other);
+            vacate(other, index);
         }
-        field.put(location, anOrganism);
+        storage.set(index, anOrganism);
+        if(anOrganism.isAlive()) {
+            storage.setOccupied(index, true);
+            count(anOrganism, 1);
+        }
+        anOrganism.setFieldSlot(this, organisms.size(), index);
         organisms.add(anOrganism);
     }
     
+    /**
+     * Claim a cell of this field for an organism, to be settled by commitClaims once every
+     * organism has acted. When several organisms claim the same cell the one with the
+     * highest priority gets it, and a random tie-break drawn for the claimant settles
+     * claims of equal priority, so the winner does not depend on the order the claims
+     * were made in. May be called from several threads at once.
+     * 
+     * @param anOrganism The organism claiming the cell.
+     * @param index The index of the cell claimed.
+     * @param origin The index of the cell the claimant (or its parent) is in now.
+     * @param priority One of the CLAIM_ priorities.
+     */
+    public void claim(Organism anOrganism, int index, int origin, int priority)
+    {
+        long key = ((long) priority << 56) | ((long) claimRand.nextInt(1 << 24) << 32) | (origin & 0xFFFFFFFFL);
+        threadClaims.get().add(anOrganism, index, origin, key);
+    }
+    
+    /**
+     * Claim the cell an organism is in for it to stay in. No one can take a cell from an
+     * organism staying in it, so the claim needs no random tie-break.
+     * 
+     * @param anOrganism The organism staying put.
+     * @param index The index of its cell.
+     */
+    public void claimStay(Organism anOrganism, int index)
+    {
+        threadClaims.get().add(anOrganism, index, index, ((long) CLAIM_STAY << 56) | index);
+    }
+    
+    /**
+     * Claim a cell of this field with a key worked out elsewhere: for an organism staying
+     * put while it waits to hear whether it may move, or for one arriving from outside the
+     * field (see ShardWorker). A claimant from outside has no cell of this field to go back
+     * to, so if it loses the cell it is simply dropped.
+     * 
+     * @param anOrganism The organism claiming the cell.
+     * @param index The index of the cell claimed.
+     * @param origin The index of the cell the claimant is in now, or -1 if it is not in this field.
+     * @param key The claim's key: its priority, a random tie-break and its origin, as built by claim.
+     */
+    public void claimWithKey(Organism anOrganism, int index, int origin, long key)
+    {
+        threadClaims.get().add(anOrganism, index, origin, key);
+    }
+    
+    /**
+     * Take the claims made on a range of cells out of this field, so that they can be settled
+     * elsewhere (see ShardWorker). Claims by organisms which have since died are dropped.
+     * The claims are returned in order of cell, then key, whatever order they were made in.
+     * 
+     * @param firstCell The index of the first cell of the range.
+     * @param lastCell The index one past the last cell of the range.
+     * @return The claims on those cells.
+     */
+    public List<Claim> takeClaims(int firstCell, int lastCell)
+    {
+        gatherClaims();
+        List<Claim> taken = new ArrayList<>();
+        int kept = 0;
+        for(int i = 0; i < claimCount; i++) {
+            if(claimTargets[i] >= firstCell && claimTargets[i] < lastCell) {
+                if(claimants[i].isAlive()) {
+                    taken.add(new Claim(claimants[i], claimTargets[i], claimOrigins[i], claimKeys[i]));
+                }
+            }
+            else {
+                claimTargets[kept] = claimTargets[i];
+                claimOrigins[kept] = claimOrigins[i];
+                claimKeys[kept] = claimKeys[i];
+                claimants[kept] = claimants[i];
+                kept++;
+            }
+        }
+        Arrays.fill(claimants, kept, claimCount, null);
+        claimCount = kept;
+        taken.sort(Comparator.comparingInt(Claim::target).thenComparingLong(Claim::key));
+        return taken;
+    }
+    
+    /**
+     * Create the claim buffer of a thread which has not claimed a cell of this field
+     * before, and register it so that its claims are committed with the others.
+     * 
+     * @return The new buffer.
+     */
+    private ClaimBuffer newClaimBuffer()
+    {
+        ClaimBuffer buffer = new ClaimBuffer();
+        synchronized(claimBuffers) {
+            claimBuffers.add(buffer);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Settle every claim made since the last commit and place the winners. Claims by
+     * organisms which have since died are dropped, and no one can take a cell from an
+     * organism staying in it; any other cell goes to its best claimant. An animal which
+     * loses the cell it moved to goes back to the cell it came from, taking it from
+     * whoever won it, unless every cell around it is held by an organism staying put, in
+     * which case it dies of overcrowding. A newborn or seedling which loses its cell is
+     * never born, and neither is a claimant from outside the field (see claimWithKey).
+     */
+    public void commitClaims()
+    {
+        gatherClaims();
+        // Organisms staying put are placed straight away. The other claims are sorted by
+        // the cell claimed, keeping each claim's position alongside. The winners do not
+        // depend on the order the claims were gathered in, only on their keys.
+        long[] order = claimOrder;
+        int contested = 0;
+        for(int i = 0; i < claimCount; i++) {
+            if((int) (claimKeys[i] >>> 56) == CLAIM_STAY) {
+                if(claimants[i].isAlive()) {
+                    place(claimants[i], claimTargets[i]);
+                }
+            }
+            else {
+                order[contested++] = ((long) claimTargets[i] << 32) | i;
+            }
+        }
+        Arrays.sort(order, 0, contested);
+        
+        // The best living claimant wins each cell no one is staying in
+        boolean[] won = claimWon;
+        boolean[] back = claimBack;
+        Arrays.fill(won, 0, claimCount, false);
+        Arrays.fill(back, 0, claimCount, false);
+        int start = 0;
+        while(start < contested) {
+            int target = (int) (order[start] >>> 32);
+            boolean held = storage.isOccupied(target);
+            int end = start;
+            int winner = -1;
+            while(end < contested && (int) (order[end] >>> 32) == target) {
+                int claim = (int) order[end];
+                if(!held && claimants[claim].isAlive() && (winner < 0 || claimKeys[claim] > claimKeys[winner])) {
+                    winner = claim;
+                }
+                end++;
+            }
+            if(winner >= 0) {
+                won[winner] = true;
+            }
+            start = end;
+        }
+        
+        // Send the movers which lost back where they came from. Only the organisms staying
+        // put have been placed so far, so whether a mover is overcrowded does not depend on
+        // the order this is done in. A mover going back takes its cell from whoever won it,
+        // which may send another mover back in turn.
+        int returnCount = 0;
+        for(int n = 0; n < contested; n++) {
+            int claim = (int) order[n];
+            if(!won[claim] && claimants[claim].isAlive() && (int) (claimKeys[claim] >>> 56) == CLAIM_MOVE) {
+                returning[returnCount++] = claim;
+            }
+        }
+        while(returnCount > 0) {
+            int claim = returning[--returnCount];
+            int origin = claimOrigins[claim];
+            if(origin < 0) {
+                continue;       // from outside the field, so it has nowhere to go back to
+            }
+            if(getFreeAdjacentMask(origin) == 0) {
+                claimants[claim].setDead();
+                continue;
+            }
+            back[claim] = true;
+            int n = Arrays.binarySearch(order, 0, contested, (long) origin << 32);
+            for(n = n >= 0 ? n : -n - 1; n < contested && (int) (order[n] >>> 32) == origin; n++) {
+                int other = (int) order[n];
+                if(won[other]) {
+                    won[other] = false;
+                    if((int) (claimKeys[other] >>> 56) == CLAIM_MOVE) {
+                        returning[returnCount++] = other;
+                    }
+                }
+            }
+        }
+        
+        for(int n = 0; n < contested; n++) {
+            int claim = (int) order[n];
+            Organism claimant = claimants[claim];
+            if(won[claim]) {
+                int target = (int) (order[n] >>> 32);
+                claimant.setLocation(layout.getLocation(target));
+                place(claimant, target);
+            }
+            else if(back[claim]) {
+                int origin = claimOrigins[claim];
+                claimant.setLocation(layout.getLocation(origin));
+                place(claimant, origin);
+            }
+            else if(claimant.isAlive()) {
+                claimant.setDead();
+            }
+        }
+        Arrays.fill(claimants, 0, claimCount, null);
+        claimCount = 0;
+    }
+    
+    /**
+     * Move the claims of every thread's buffer into the field's claim arrays, after any
+     * gathered already, emptying the buffers, and make sure the working arrays of the
+     * commit are big enough for them.
+     */
+    private void gatherClaims()
+    {
+        int total = claimCount;
+        for(ClaimBuffer buffer : claimBuffers) {
+            total += buffer.count;
+        }
+        if(total > claimKeys.length) {
+            int capacity = Math.max(1024, Math.max(total, claimKeys.length * 2));
+            claimTargets = Arrays.copyOf(claimTargets, capacity);
+            claimOrigins = Arrays.copyOf(claimOrigins, capacity);
+            claimKeys = Arrays.copyOf(claimKeys, capacity);
+            claimants = Arrays.copyOf(claimants, capacity);
+            claimOrder = new long[capacity];
+            claimWon = new boolean[capacity];
+            claimBack = new boolean[capacity];
+            returning = new int[capacity];
+        }
+        for(ClaimBuffer buffer : claimBuffers) {
+            System.arraycopy(buffer.targets, 0, claimTargets, claimCount, buffer.count);
+            System.arraycopy(buffer.origins, 0, claimOrigins, claimCount, buffer.count);
+            System.arraycopy(buffer.keys, 0, claimKeys, claimCount, buffer.count);
+            System.arraycopy(buffer.claimants, 0, claimants, claimCount, buffer.count);
+            claimCount += buffer.count;
+            buffer.clear();
+        }
+    }
+    
+    /**
+     * Stop deaths from freeing cells until the field is next cleared. The simulator freezes
+     * the current field while organisms act, so that every organism sees the same free
+     * cells whatever order they act in. Organisms which died since they were placed are
+     * swept out of the organism list first, so only living organisms are left to act.
+     */
+    public void freeze()
+    {
+        sweepDead();
+        frozen = true;
+    }
+    
+    /**
+     * Remove every dead organism from the organism list in a single pass, keeping the
+     * living ones in order. The dead stay in their cells, which no longer count as
+     * occupied, so that they can still be found there until the field is cleared.
+     */
+    private void sweepDead()
+    {
+        int live = 0;
+        for(int slot = 0; slot < organisms.size(); slot++) {
+            Organism anOrganism = organisms.get(slot);
+            if(anOrganism.isAlive()) {
+                if(live != slot) {
+                    organisms.set(live, anOrganism);
+                    anOrganism.setFieldSlot(live);
+                }
+                live++;
+            }
+            else {
+                anOrganism.setFieldSlot(SWEPT);
+            }
+        }
+        organisms.subList(live, organisms.size()).clear();
+    }
+    
+    /**
+     * Record that an organism has died, so its cell counts as free.
+     * Nothing happens if the organism is no longer in that cell.
+     * 
+     * @param anOrganism The organism which has died.
+     * @param index The index of the cell it was placed in.
+     */
+    public void markDead(Organism anOrganism, int index)
+    {
+        if(!frozen && storage.get(index) == anOrganism) {
+            vacate(anOrganism, index);
+        }
+    }
+    
+    /**
+     * Clear the occupancy bit of a cell, and take the organism which held it off the
+     * live counts if the bit was set.
+     * 
+     * @param anOrganism The organism which was in the cell.
+     * @param index The index of the cell.
+     */
+    private void vacate(Organism anOrganism, int index)
+    {
+        if(storage.isOccupied(index)) {
+            storage.setOccupied(index, false);
+            count(anOrganism, -1);
+        }
+    }
+    
+    /**
+     * Adjust the live counts for an organism arriving in or leaving the field.
+     * 
+     * @param anOrganism The organism.
+     * @param change 1 if it has arrived, -1 if it has left or died.
+     */
+    private void count(Organism anOrganism, int change)
+    {
+        int id = anOrganism.getSpeciesId();
+        liveCounts[id] += change;
+        liveRoleCounts[Species.byId(id).getRole().ordinal()] += change;
+    }
+    
+    /**
+     * Remove an organism from the organism list by moving the last organism
+     * in the list into its slot. The order of the list stays deterministic, but it is
+     * no longer the order the organisms were placed in, so anything which walks the list
+     * in order sees the organisms in a different order than it would with a plain remove.
+     * (The stepper walks cells rather than the list, so this does not change which
+     * organism acts first.)
+     * 
+     * @param anOrganism The organism to remove.
+     */
+    private void removeOrganism(Organism anOrganism)
+    {
+        int slot = anOrganism.getFieldSlot(this);
+        if(slot == SWEPT) {
+            return;     // no longer in the list
+        }
+        if(slot < 0 || slot >= organisms.size() || organisms.get(slot) != anOrganism) {
+            // The organism does not know its slot in this list; fall back to searching.
+            organisms.remove(anOrganism);
+            return;
+        }
+        Organism last = organisms.remove(organisms.size() - 1);
+        if(last != anOrganism) {
+            organisms.set(slot, last);
+            last.setFieldSlot(slot);
+        }
+    }
+    
     /**
      * Return the organism at the specific location, if any.
      * 
@@ -63,7 +498,170 @@ public class Field
      */
     public Organism getOrganismAt(Location location)
     {
-        return field.get(location);
+        return storage.get(indexOf(location));
+    }
+    
+    /**
+     * Return the organism in the cell with the given index, if any.
+     * 
+     * @param index The index of the cell (row * width + col).
+     * @return The organism in that cell, or null if there is none.
+     */
+    public Organism getOrganismAt(int index)
+    {
+        return storage.get(index);
+    }
+    
+    /**
+     * Return the index of a location's cell.
+     * 
+     * @param location A location within the field.
+     * @return The row-major index of that location.
+     */
+    public int indexOf(Location location)
+    {
+        return location.row() * width + location.col();
+    }
+    
+    /**
+     * Return the shared Location object of a cell.
+     * 
+     * @param index The index of the cell.
+     * @return The location of that cell.
+     */
+    public Location getLocation(int index)
+    {
+        return layout.getLocation(index);
+    }
+    
+    /**
+     * Return the shared Location object of a cell.
+     * 
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The location of that cell.
+     */
+    public Location getLocation(int row, int col)
+    {
+        return layout.getLocation(row, col);
+    }
+    
+    /**
+     * Return the index of the cell next to the given one in a direction.
+     * 
+     * @param index The index of the cell.
+     * @param direction A direction from 0 to FieldLayout.MAX_ADJACENT - 1.
+     * @return The index of the adjacent cell, or -1 if it lies outside the field.
+     */
+    public int getAdjacentIndex(int index, int direction)
+    {
+        return layout.getAdjacentIndex(index, direction);
+    }
+    
+    /**
+     * Return the index of a cell's neighbour when the neighbours are visited in a given order.
+     * Going through positions 0 to FieldLayout.MAX_ADJACENT - 1 visits every neighbour once.
+     * 
+     * @param index The index of the cell.
+     * @param order A visiting order, as returned by randomOrder.
+     * @param position How many neighbours have been visited before this one.
+     * @return The index of the adjacent cell, or -1 if it lies outside the field.
+     */
+    public int getAdjacentIndex(int index, int order, int position)
+    {
+        return layout.getAdjacentIndex(index, order, position);
+    }
+    
+    /**
+     * Pick a random order in which to visit the neighbours of a cell.
+     * 
+     * @return The chosen order, for use with getAdjacentIndex(index, order, position).
+     */
+    public int randomOrder()
+    {
+        return FieldLayout.randomOrder(rand);
+    }
+    
+    /**
+     * Return which of the cells adjacent to the given one are free.
+     * A cell is free if it contains no organism or it contains an organism
+     * which is no longer alive.
+     * 
+     * @param index The index of the cell.
+     * @return A mask with bit d set if the neighbour in direction d exists and is free.
+     */
+    public int getFreeAdjacentMask(int index)
+    {
+        int adjacent = layout.getAdjacentMask(index);
+        // Read the three cells above, the cells either side and the three cells below
+        // straight out of the occupancy bits. Directions 0-2 are the row above,
+        // 3 and 4 are left and right, and 5-7 are the row below.
+        int taken = 0;
+        if((adjacent & 0b00000111) != 0) {
+            taken |= storage.occupiedBits(index - width - 1);
+        }
+        int sides = storage.occupiedBits(index - 1);
+        taken |= (sides & 1) << 3;
+        taken |= (sides & 4) << 2;
+        if((adjacent & 0b11100000) != 0) {
+            taken |= storage.occupiedBits(index + width - 1) << 5;
+        }
+        return adjacent & ~taken;
+    }
+    
+    
+    /**
+     * Return which of the cells adjacent to the given one lie inside the field, free or not.
+     * 
+     * @param index The index of the cell.
+     * @return A mask with bit d set if the neighbour in direction d exists.
+     */
+    public int getAdjacentMask(int index)
+    {
+        return layout.getAdjacentMask(index);
+    }
+    
+    /**
+     * Pick one of a cell's neighbours at random from a mask of directions.
+     * 
+     * @param index The index of the cell.
+     * @param mask The directions to choose from, as returned by getFreeAdjacentMask.
+     * @return The index of the chosen neighbour, or -1 if the mask is empty.
+     */
+    public int pickAdjacentIndex(int index, int mask)
+    {
+        if(mask == 0) {
+            return -1;
+        }
+        return layout.getAdjacentIndex(index, pickAdjacentDirection(mask));
+    }
+    
+    /**
+     * Pick one direction at random from a mask of directions.
+     * 
+     * @param mask The directions to choose from, which must not be empty.
+     * @return The chosen direction.
+     */
+    public int pickAdjacentDirection(int mask)
+    {
+        // Drop a random number of the lowest set bits and take the next one.
+        for(int skip = rand.nextInt(Integer.bitCount(mask)); skip > 0; skip--) {
+            mask &= mask - 1;
+        }
+        return Integer.numberOfTrailingZeros(mask);
+    }
+    
+    /**
+     * Return the index of a randomly chosen free cell adjacent to the given one.
+     * A cell is free if it contains no organism or it contains an organism
+     * which is no longer alive.
+     * 
+     * @param index The index of the cell.
+     * @return The index of a free adjacent cell, or -1 if there is none.
+     */
+    public int getFreeAdjacentIndex(int index)
+    {
+        return pickAdjacentIndex(index, getFreeAdjacentMask(index));
     }
 
     /**
@@ -97,14 +695,13 @@ public class Field
     public List<Location> getFreeAdjacentLocations(Location location)
     {
         List<Location> free = new LinkedList<>();
-        List<Location> adjacent = getAdjacentLocations(location);
-        for(Location next : adjacent) {
-            Organism anOrganism = field.get(next);
-            if(anOrganism == null) {
-                free.add(next);
-            }
-            else if(!anOrganism.isAlive()) {
-                free.add(next);
+        int index = indexOf(location);
+        int mask = getFreeAdjacentMask(index);
+        int order = randomOrder();
+        for(int position = 0; position < FieldLayout.MAX_ADJACENT; position++) {
+            int next = layout.getAdjacentIndex(index, order, position);
+            if(next >= 0 && (mask & (1 << FieldLayout.getDirection(order, position))) != 0) {
+                free.add(layout.getLocation(next));
             }
         }
         return free;
@@ -123,24 +720,17 @@ public class Field
         // The list of locations to be returned.
         List<Location> locations = new ArrayList<>();
         if(location != null) {
-            int row = location.row();
-            int col = location.col();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
+            int index = indexOf(location);
+            // Visit the neighbours in a random order. Several other methods
+            // rely on the list being in a random order.
+            int order = randomOrder();
+            for(int position = 0; position < FieldLayout.MAX_ADJACENT; position++) {
+                int next = layout.getAdjacentIndex(index, order, position);
+                // Exclude locations outside the field.
+                if(next >= 0) {
+                    locations.add(layout.getLocation(next));
                 }
             }
-            
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
         }
         return locations;
     }
@@ -150,58 +740,45 @@ public class Field
      */
     public void fieldStats()
     {
-        int numTigerShark = 0,
-            numOctopus = 0,
-            numParrotfish = 0,
-            numKrill = 0,
-            numHermitCrab = 0,
-            numMarineAlgae = 0,
-            numKelp = 0;
-            
-        for(Organism organism : field.values()) {
-            if(organism instanceof TigerShark shark) {
-                if(shark.isAlive()) {
-                    numTigerShark++;
-                }
-            }
-            if(organism instanceof Parrotfish fish) {
-                if(fish.isAlive()) {
-                    numParrotfish++;
-                }
-            }
-            if (organism instanceof Octopus octopus) {
-                if(octopus.isAlive()) {
-                    numOctopus++;
-                }
-            }
-            if (organism instanceof Krill krill) {
-                if(krill.isAlive()) {
-                    numKrill++;
-                }
-            }
-            if (organism instanceof HermitCrab crab) {
-                if(crab.isAlive()) {
-                    numHermitCrab++;
-                }
-            }
-            if (organism instanceof MarineAlgae algae) {
-                if(algae.isAlive()) {
-                    numMarineAlgae++;
-                }
-            }
-            if (organism instanceof Kelp kelp) {
-                if(kelp.isAlive()) {
-                    numKelp++;
-                }
-            }
-        }
-        System.out.println("Tiger Sharks: " + numTigerShark +
-                           " Octopuses : " + numOctopus +
-                           " Parrotfishes : " + numParrotfish +
-                           " Krill: " + numKrill +
-                           " Hermit Crab: " + numHermitCrab +
-                           " Kelp: " + numKelp +
-                           " Marine Algae: " + numMarineAlgae);
+        System.out.println(FieldStats.describe(this::getLiveCount));
+    }
+    
+    /**
+     * Return the number of living organisms of a species in the field.
+     * 
+     * @param species The species to count.
+     * @return How many of that species are alive in the field.
+     */
+    public int getLiveCount(Species species)
+    {
+        return liveCounts[species.getId()];
+    }
+
+    /**
+     * @return The number of living predators in the field.
+     */
+    public int getLivePredators()
+    {
+        return getLiveCount(TrophicRole.PREDATOR);
+    }
+    
+    /**
+     * @return The number of living prey in the field.
+     */
+    public int getLivePrey()
+    {
+        return getLiveCount(TrophicRole.PREY);
+    }
+    
+    /**
+     * Return the number of living organisms of a trophic role in the field.
+     * 
+     * @param role The role to count.
+     * @return How many organisms of that role are alive in the field.
+     */
+    public int getLiveCount(TrophicRole role)
+    {
+        return liveRoleCounts[role.ordinal()];
     }
 
     /**
@@ -209,10 +786,24 @@ public class Field
      */
     public void clear()
     {
-        field.clear();
+        frozen = false;
+        Arrays.fill(claimants, 0, claimCount, null);
+        claimCount = 0;
+        storage.clear();
+        Arrays.fill(liveCounts, 0);
+        Arrays.fill(liveRoleCounts, 0);
         organisms.clear();
     }
 
+    /**
+     * Release whatever the field's storage holds outside the heap, such as the file of
+     * a mapped field (see FieldStorage.close). The field cannot be used afterwards.
+     */
+    public void close()
+    {
+        storage.close();
+    }
+
     /**
      * Return whether the simulation is still viable, therefore containing at least one
      * living predator and one living prey
@@ -221,23 +812,7 @@ public class Field
      */
     public boolean isViable()
     {
-        boolean predatorFound = false;
-        boolean preyFound = false;
-        Iterator<Organism> it = organisms.iterator();
-        while(it.hasNext() && ! (predatorFound && preyFound)) {
-            Organism organism = it.next();
-            if(organism instanceof Predator predator) {
-                if(predator.isAlive()) {
-                    predatorFound = true;
-                }
-            }
-            else if(organism instanceof Prey prey) {
-                if(prey.isAlive()) {
-                    preyFound = true;
-                }
-            }
-        }
-        return predatorFound && preyFound;
+        return getLivePredators() > 0 && getLivePrey() > 0;
     }
     
     /**
@@ -250,6 +825,26 @@ public class Field
         return organisms;
     }
 
+    /**
+     * Return the layout of the field, which can be used to make more fields of the same shape.
+     * 
+     * @return The layout of the field.
+     */
+    public FieldLayout getLayout()
+    {
+        return layout;
+    }
+    
+    /**
+     * Return the number of cells in the field.
+     * 
+     * @return The number of cells.
+     */
+    public int getSize()
+    {
+        return layout.getSize();
+    }
+
     /**
      * Return the depth of the field.
      * 
@@ -269,4 +864,45 @@ public class Field
     {
         return width;
     }
+    
+    /**
+     * The claims one thread has made on the cells of a field since they were last
+     * committed, appended in the order they were made.
+     */
+    private static class ClaimBuffer
+    {
+        private int count;
+        private int[] targets = new int[0];
+        private int[] origins = new int[0];
+        private long[] keys = new long[0];
+        private Organism[] claimants = new Organism[0];
+        
+        /**
+         * Append a claim, growing the arrays if they are full.
+         */
+        void add(Organism anOrganism, int target, int origin, long key)
+        {
+            if(count == keys.length) {
+                int capacity = Math.max(1024, count * 2);
+                targets = Arrays.copyOf(targets, capacity);
+                origins = Arrays.copyOf(origins, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+                claimants = Arrays.copyOf(claimants, capacity);
+            }
+            targets[count] = target;
+            origins[count] = origin;
+            keys[count] = key;
+            claimants[count] = anOrganism;
+            count++;
+        }
+        
+        /**
+         * Forget the claims, letting go of the claimants.
+         */
+        void clear()
+        {
+            Arrays.fill(claimants, 0, count, null);
+            count = 0;
+        }
+    }
 }
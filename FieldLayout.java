@@ -0,0 +1,345 @@
+import java.util.Random;
+
+/**
+ * FieldLayout describes the shape of a rectangular field: its dimensions, how each
+ * cell maps to an int index (row * width + col) and how neighbouring cells are found.
+ *
+ * It also holds one Location object per cell. Code which needs a Location for a cell
+ * is handed that shared instance instead of creating a new one, so equal cells are
+ * always the same object and no Locations are allocated while the simulation runs.
+ * A layout never changes once made, so fields of the same size can share one.
+ *
+ * Very large fields are tiled: they are split into square chunks of CHUNK_SIZE cells a
+ * side, and the Locations of a chunk are only made the first time one of its cells is
+ * asked for. Fields with a tiled layout also store their cells chunk by chunk (see
+ * ChunkedFieldStorage), so the parts of the ocean nothing lives in cost no memory.
+ * The very largest fields are out of core: their cells are kept in a memory-mapped file
+ * (see MappedFieldStorage), and Locations are made when asked for rather than kept,
+ * since a table of them would not fit in the heap either.
+ *
+ * Neighbours are found from precomputed tables rather than by bounds checking: the index
+ * offset of each of the 8 directions, and for every row and every column the directions
+ * which stay inside the field (all of them, except along the edges). Random visiting
+ * orders come from a table holding every ordering of the 8 directions, so picking a random
+ * order costs a single random number instead of shuffling a list.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class FieldLayout
+{
+    // The number of cells adjacent to a cell which is not on an edge.
+    public static final int MAX_ADJACENT = 8;
+    // Row and column offsets of the adjacent cells, in direction order.
+    private static final int[] ROW_OFFSETS = {-1, -1, -1, 0, 0, 1, 1, 1};
+    private static final int[] COL_OFFSETS = {-1, 0, 1, -1, 1, -1, 0, 1};
+    // The number of different orders the adjacent cells can be visited in (8!).
+    private static final int ORDER_COUNT = 40320;
+    // Every ordering of the directions, MAX_ADJACENT entries per ordering.
+    private static final byte[] ORDERS = makeOrders();
+    // Chunks of a tiled layout are 1 << CHUNK_SHIFT cells a side.
+    public static final int CHUNK_SHIFT = 6;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    // Fields with at least this many cells are tiled into chunks.
+    private static final int TILED_MIN_CELLS = 1 << 22;
+    // Fields with at least this many cells keep their cells out of the heap.
+    private static final int OUT_OF_CORE_MIN_CELLS = 1 << 26;
+
+    // The dimensions of the field.
+    private final int depth, width;
+    // The number of chunks down and across the field.
+    private final int chunksDown, chunksAcross;
+    // Whether the field is tiled into chunks, and whether its cells are kept out of the heap.
+    private final boolean tiled, outOfCore;
+    // The shared Location of each cell, indexed by cell index (null when tiled).
+    private final Location[] locations;
+    // When tiled, the shared Locations of each chunk, made the first time they are needed.
+    private final Location[][] chunkLocations;
+    // The difference in cell index between a cell and its neighbour in each direction.
+    private final int[] directionOffsets;
+    // For each row and each column, a bit per direction which stays inside the field.
+    private final byte[] rowMasks, colMasks;
+
+    /**
+     * Create the layout of a field with the given dimensions.
+     *
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    public FieldLayout(int depth, int width)
+    {
+        this.depth = depth;
+        this.width = width;
+        chunksDown = (depth + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        chunksAcross = (width + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        tiled = (long) depth * width >= TILED_MIN_CELLS;
+        outOfCore = (long) depth * width >= OUT_OF_CORE_MIN_CELLS;
+        if(outOfCore) {
+            locations = null;
+            chunkLocations = null;
+        }
+        else if(tiled) {
+            locations = null;
+            chunkLocations = new Location[chunksDown * chunksAcross][];
+        }
+        else {
+            locations = new Location[depth * width];
+            for(int row = 0; row < depth; row++) {
+                for(int col = 0; col < width; col++) {
+                    locations[row * width + col] = new Location(row, col);
+                }
+            }
+            chunkLocations = null;
+        }
+        
+        directionOffsets = new int[MAX_ADJACENT];
+        rowMasks = new byte[depth];
+        colMasks = new byte[width];
+        for(int direction = 0; direction < MAX_ADJACENT; direction++) {
+            directionOffsets[direction] = ROW_OFFSETS[direction] * width + COL_OFFSETS[direction];
+            int bit = 1 << direction;
+            for(int row = 0; row < depth; row++) {
+                int nextRow = row + ROW_OFFSETS[direction];
+                if(nextRow >= 0 && nextRow < depth) {
+                    rowMasks[row] |= bit;
+                }
+            }
+            for(int col = 0; col < width; col++) {
+                int nextCol = col + COL_OFFSETS[direction];
+                if(nextCol >= 0 && nextCol < width) {
+                    colMasks[col] |= bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the index of a location.
+     *
+     * @param location A location within the field.
+     * @return The row-major index of that location.
+     */
+    public int indexOf(Location location)
+    {
+        return location.row() * width + location.col();
+    }
+
+    /**
+     * Return the shared Location object for a cell.
+     *
+     * @param index The index of the cell.
+     * @return The location of that cell.
+     */
+    public Location getLocation(int index)
+    {
+        if(outOfCore) {
+            int row = index / width;
+            return new Location(row, index - row * width);
+        }
+        if(tiled) {
+            int row = index / width;
+            return getChunkLocation(row, index - row * width);
+        }
+        return locations[index];
+    }
+
+    /**
+     * Return the shared Location object for a cell.
+     *
+     * @param row The row of the cell.
+     * @param col The column of the cell.
+     * @return The location of that cell.
+     */
+    public Location getLocation(int row, int col)
+    {
+        if(outOfCore) {
+            return new Location(row, col);
+        }
+        if(tiled) {
+            return getChunkLocation(row, col);
+        }
+        return locations[row * width + col];
+    }
+
+    /**
+     * Return the index of the cell next to the given one in a direction.
+     * Directions are numbered 0 to MAX_ADJACENT - 1, going row by row around the cell.
+     *
+     * @param index The index of the cell.
+     * @param direction The direction to look in.
+     * @return The index of the adjacent cell, or -1 if it would lie outside the field.
+     */
+    public int getAdjacentIndex(int index, int direction)
+    {
+        if((getAdjacentMask(index) & (1 << direction)) == 0) {
+            return -1;
+        }
+        return index + directionOffsets[direction];
+    }
+    
+    /**
+     * Return the index of a cell's neighbour when the neighbours are visited in a given order.
+     *
+     * @param index The index of the cell.
+     * @param order A visiting order, as returned by randomOrder.
+     * @param position How many neighbours have been visited before this one (0 to MAX_ADJACENT - 1).
+     * @return The index of the adjacent cell, or -1 if it would lie outside the field.
+     */
+    public int getAdjacentIndex(int index, int order, int position)
+    {
+        return getAdjacentIndex(index, ORDERS[order + position]);
+    }
+    
+    /**
+     * Return the direction visited at a position of a visiting order.
+     *
+     * @param order A visiting order, as returned by randomOrder.
+     * @param position How many neighbours have been visited before this one.
+     * @return The direction visited at that position.
+     */
+    public static int getDirection(int order, int position)
+    {
+        return ORDERS[order + position];
+    }
+    
+    /**
+     * Return which directions around a cell stay inside the field.
+     *
+     * @param index The index of the cell.
+     * @return A mask with bit d set if the neighbour in direction d exists.
+     */
+    public int getAdjacentMask(int index)
+    {
+        int row = index / width;
+        int col = index - row * width;
+        return rowMasks[row] & colMasks[col] & 0xFF;
+    }
+    
+    /**
+     * Pick a random order in which to visit the neighbours of a cell.
+     * Every order is equally likely, and picking one costs a single random number.
+     *
+     * @param rand The random generator to draw from.
+     * @return The chosen order, for use with getAdjacentIndex(index, order, position).
+     */
+    public static int randomOrder(Random rand)
+    {
+        return rand.nextInt(ORDER_COUNT) * MAX_ADJACENT;
+    }
+
+    /**
+     * @return The number of cells in the field.
+     */
+    public int getSize()
+    {
+        return depth * width;
+    }
+
+    /**
+     * @return Whether the field is tiled into chunks.
+     */
+    public boolean isTiled()
+    {
+        return tiled;
+    }
+
+    /**
+     * @return Whether the field's cells are kept out of the heap.
+     */
+    public boolean isOutOfCore()
+    {
+        return outOfCore;
+    }
+
+    /**
+     * @return The number of chunks down the field.
+     */
+    public int getChunksDown()
+    {
+        return chunksDown;
+    }
+
+    /**
+     * @return The number of chunks across the field.
+     */
+    public int getChunksAcross()
+    {
+        return chunksAcross;
+    }
+
+    /**
+     * Return the shared Location of a cell of a tiled layout, making the Locations
+     * of its chunk if this is the first time any of them is needed.
+     */
+    private Location getChunkLocation(int row, int col)
+    {
+        int chunk = (row >> CHUNK_SHIFT) * chunksAcross + (col >> CHUNK_SHIFT);
+        Location[] chunkCells = chunkLocations[chunk];
+        if(chunkCells == null) {
+            chunkCells = new Location[CHUNK_SIZE * CHUNK_SIZE];
+            int firstRow = row & ~(CHUNK_SIZE - 1);
+            int firstCol = col & ~(CHUNK_SIZE - 1);
+            for(int r = 0; r < CHUNK_SIZE; r++) {
+                for(int c = 0; c < CHUNK_SIZE; c++) {
+                    chunkCells[(r << CHUNK_SHIFT) | c] = new Location(firstRow + r, firstCol + c);
+                }
+            }
+            chunkLocations[chunk] = chunkCells;
+        }
+        return chunkCells[((row & (CHUNK_SIZE - 1)) << CHUNK_SHIFT) | (col & (CHUNK_SIZE - 1))];
+    }
+
+    /**
+     * Build the table of every ordering of the directions, in lexicographic order.
+     */
+    private static byte[] makeOrders()
+    {
+        byte[] orders = new byte[ORDER_COUNT * MAX_ADJACENT];
+        byte[] order = new byte[MAX_ADJACENT];
+        for(int direction = 0; direction < MAX_ADJACENT; direction++) {
+            order[direction] = (byte) direction;
+        }
+        for(int n = 0; n < ORDER_COUNT; n++) {
+            System.arraycopy(order, 0, orders, n * MAX_ADJACENT, MAX_ADJACENT);
+            
+            // Step on to the next ordering: find the last place the order rises,
+            // swap in the next larger value from the tail and reverse the tail.
+            int i = MAX_ADJACENT - 2;
+            while(i >= 0 && order[i] > order[i + 1]) {
+                i--;
+            }
+            if(i < 0) {
+                break;
+            }
+            int j = MAX_ADJACENT - 1;
+            while(order[j] < order[i]) {
+                j--;
+            }
+            byte swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+            for(int lo = i + 1, hi = MAX_ADJACENT - 1; lo < hi; lo++, hi--) {
+                swap = order[lo];
+                order[lo] = order[hi];
+                order[hi] = swap;
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * A FieldSnapshot is an unchanging copy of what a view needs to show one step of the
+ * simulation: the species in every cell (one byte per cell), the number alive of each
+ * species, the weather and the clock.
+ *
+ * The simulator takes a snapshot at the end of each step and hands it to the view, which
+ * draws it on its own thread while the simulator goes on with the next step. Nothing in a
+ * snapshot refers back to the field or its organisms, so it can be read from any thread
+ * while the field is being changed.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public final class FieldSnapshot
+{
+    // The value of a cell with no living organism in it; other cells hold their
+    // species id plus one.
+    public static final byte EMPTY = 0;
+    // The step shown, and the time of day and weather during it
+    private final int step;
+    private final String formattedTime;
+    private final WeatherType weather;
+    // The dimensions of the field
+    private final int depth, width;
+    // The species in each cell, indexed by cell index (see EMPTY)
+    private final byte[] cells;
+    // The number of living organisms of each species, indexed by species id
+    private final int[] liveCounts;
+
+    /**
+     * Take a snapshot of a field.
+     *
+     * @param step The step the field shows.
+     * @param formattedTime The time of day during that step.
+     * @param field The field to copy.
+     */
+    public FieldSnapshot(int step, String formattedTime, Field field)
+    {
+        this.step = step;
+        this.formattedTime = formattedTime;
+        weather = field.getWeather();
+        depth = field.getDepth();
+        width = field.getWidth();
+        // Only the organisms need visiting: every other cell is empty
+        cells = new byte[depth * width];
+        for(Organism anOrganism : field.getOrganisms()) {
+            if(anOrganism.isAlive()) {
+                cells[field.indexOf(anOrganism.getLocation())] = (byte) (anOrganism.getSpeciesId() + 1);
+            }
+        }
+        liveCounts = new int[Species.count()];
+        for(int id = 0; id < liveCounts.length; id++) {
+            liveCounts[id] = field.getLiveCount(Species.byId(id));
+        }
+    }
+
+    /**
+     * Return the species living in a cell.
+     *
+     * @param index The index of the cell (row * width + col).
+     * @return The species in that cell, or null if it is empty.
+     */
+    public Species getSpeciesAt(int index)
+    {
+        int code = cells[index];
+        return code == EMPTY ? null : Species.byId(code - 1);
+    }
+
+    /**
+     * Return the value stored for a cell: its species' id plus one, or EMPTY.
+     *
+     * @param index The index of the cell (row * width + col).
+     * @return The value of that cell.
+     */
+    public int getCellValue(int index)
+    {
+        return cells[index];
+    }
+
+    /**
+     * Return the number of living organisms of a species.
+     *
+     * @param species The species to count.
+     * @return How many of that species were alive.
+     */
+    public int getLiveCount(Species species)
+    {
+        return liveCounts[species.getId()];
+    }
+
+    /**
+     * @return The step the snapshot shows.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The time of day during the step, formatted for display.
+     */
+    public String getFormattedTime()
+    {
+        return formattedTime;
+    }
+
+    /**
+     * @return The weather during the step.
+     */
+    public WeatherType getWeather()
+    {
+        return weather;
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+}
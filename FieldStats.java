@@ -1,30 +1,21 @@
-import java.util.HashMap;
-import java.util.Map;
+import java.util.function.ToIntFunction;
 
 /**
- * This class collects and provides some statistical data on the state 
- * of a field. It is flexible: it will create and maintain a counter 
- * for any class of object that is found within the field.
+ * This class provides some statistical data on the state of a field.
+ * The field keeps a running count of the living organisms of every
+ * species as they are placed and die, so the statistics are read
+ * straight from those counts rather than by visiting every cell.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
 public class FieldStats
 {
-    // Counters for each type of entity (fox, rabbit, etc.) in the simulation.
-    private final Map<Class<?>, Counter> counters;
-    // Whether the counters are currently up to date.
-    private boolean countsValid;
-
     /**
      * Construct a FieldStats object.
      */
     public FieldStats()
     {
-        // Set up a collection for counters for each type of animal that
-        // we might find
-        counters = new HashMap<>();
-        countsValid = true;
     }
 
     /**
@@ -33,55 +24,34 @@ public class FieldStats
      */
     public String getPopulationDetails(Field field)
     {
-        StringBuilder details = new StringBuilder();
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class<?> key : counters.keySet()) {
-            Counter info = counters.get(key);
-            details.append(info.getName())
-                   .append(": ")
-                   .append(info.getCount())
-                   .append(' ');
-        }
-        return details.toString();
-    }
-    
-    /**
-     * Invalidate the current set of statistics; reset all 
-     * counts to zero.
-     */
-    public void reset()
-    {
-        countsValid = false;
-        for(Class<?> key : counters.keySet()) {
-            Counter count = counters.get(key);
-            count.reset();
-        }
+        return describe(field::getLiveCount);
     }
 
     /**
-     * Increment the count for one class of animal.
-     * @param animalClass The class of animal to increment.
+     * Get details of what was in the field when a snapshot was taken.
+     * @return A string describing what is in the snapshot.
      */
-    public void incrementCount(Class<?> animalClass)
+    public String getPopulationDetails(FieldSnapshot snapshot)
     {
-        Counter count = counters.get(animalClass);
-        if(count == null) {
-            // We do not have a counter for this species yet.
-            // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
-        }
-        count.increment();
+        return describe(snapshot::getLiveCount);
     }
 
     /**
-     * Indicate that an animal count has been completed.
+     * Describe a population: the name and number alive of every species in the registry.
+     * @param liveCount Gives the number alive of each species.
+     * @return A string describing the population.
      */
-    public void countFinished()
+    public static String describe(ToIntFunction<Species> liveCount)
     {
-        countsValid = true;
+        StringBuilder details = new StringBuilder();
+        for(int id = 0; id < Species.count(); id++) {
+            Species species = Species.byId(id);
+            details.append(species.getName())
+                   .append(": ")
+                   .append(liveCount.applyAsInt(species))
+                   .append(' ');
+        }
+        return details.toString();
     }
 
     /**
@@ -93,25 +63,4 @@ public class FieldStats
     {
         return field.isViable();
     }
-    
-    /**
-     * Generate counts of the number of foxes and rabbits.
-     * These are not kept up to date as foxes and rabbits
-     * are placed in the field, but only when a request
-     * is made for the information.
-     * @param field The field to generate the stats for.
-     */
-    private void generateCounts(Field field)
-    {
-        reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Organism organism = field.getOrganismAt(new Location(row, col));
-                if(organism != null) {
-                    incrementCount(organism.getClass());
-                }
-            }
-        }
-        countsValid = true;
-    }
 }
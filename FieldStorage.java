@@ -0,0 +1,69 @@
+/**
+ * FieldStorage holds the contents of a field's cells: the organism in each cell and
+ * an occupancy bit per cell which is set while that organism is alive. Cells are
+ * addressed by their row-major index, as defined by the field's FieldLayout.
+ *
+ * Field works only through this class, so how the cells are kept in memory can be
+ * chosen to suit the size of the ocean. DenseFieldStorage keeps every cell in one
+ * array; ChunkedFieldStorage keeps square tiles of cells which are only allocated
+ * while something lives in them; MappedFieldStorage keeps a record per cell in a
+ * memory-mapped file for oceans too big for the heap.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public abstract class FieldStorage
+{
+    /**
+     * Return the organism in a cell.
+     *
+     * @param index The index of the cell.
+     * @return The organism in that cell, or null if there is none.
+     */
+    public abstract Organism get(int index);
+
+    /**
+     * Put an organism in a cell, replacing anything already there.
+     * The occupancy bit of the cell is not changed.
+     *
+     * @param index The index of the cell.
+     * @param anOrganism The organism to store.
+     */
+    public abstract void set(int index, Organism anOrganism);
+
+    /**
+     * @param index The index of a cell.
+     * @return Whether the occupancy bit of that cell is set.
+     */
+    public abstract boolean isOccupied(int index);
+
+    /**
+     * Set or clear the occupancy bit of a cell.
+     *
+     * @param index The index of the cell.
+     * @param occupied The new value of the bit.
+     */
+    public abstract void setOccupied(int index, boolean occupied);
+
+    /**
+     * Return the occupancy bits of three cells which follow each other in a row.
+     * Cells outside the field count as unoccupied.
+     *
+     * @param start The index of the first of the three cells.
+     * @return The three occupancy bits, lowest bit first.
+     */
+    public abstract int occupiedBits(int start);
+
+    /**
+     * Empty every cell and clear every occupancy bit.
+     */
+    public abstract void clear();
+
+    /**
+     * Release anything the storage holds outside the heap. The storage cannot be used
+     * afterwards. Storage kept only on the heap has nothing to release.
+     */
+    public void close()
+    {
+    }
+}
@@ -13,45 +13,26 @@ public class Kelp extends Plant
     private static final double CHANCE_OF_SPREAD = 0.032;
     // Food value provided when this plant is eaten
     private static final int FOOD_VALUE = 14;
+    // The constants above, as the simulation reads them (see SpeciesProfile)
+    static final SpeciesProfile PROFILE = SpeciesProfile.plant(FOOD_VALUE, MAX_AGE, CHANCE_OF_SPREAD);
 
     /**
      * Creates a Kelp plant at that specific location
      */
     public Kelp(Location location)
     {
-        super(location);
+        super(location, Species.KELP);
     }
 
     /**
-     * Returns the maximum age of Kelp
+     * Returns the species of Kelp
      * 
-     * @return The maximum age in steps
+     * @return The species of this plant
      */
     @Override
-    protected int getMaxAge()
+    public Species getSpecies()
     {
-        return MAX_AGE;
-    }
-    
-    /**
-     * Returns the default probability that Kelp spreads in a step
-     * 
-     * @return The chance of spreading within range 0.0 - 1.0
-     */
-    @Override
-    protected double getChanceOfSpread()
-    {
-        return CHANCE_OF_SPREAD;
-    }
-    
-    /**
-     * Returns the food value of Kelp
-     * 
-     * @return The number of food units/points provided when eaten
-     */
-    protected int foodValue()
-    {
-        return FOOD_VALUE;
+        return Species.KELP;
     }
     
     /**
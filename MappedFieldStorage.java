@@ -0,0 +1,273 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * MappedFieldStorage keeps an eight-byte record for every cell of a field in a memory-mapped
+ * file instead of on the heap, so the cost of the field's cells is paid in file pages. The
+ * operating system pages the parts of the file being worked on in and out, so only the
+ * active window of the ocean takes up memory.
+ *
+ * Each record holds the cell's occupancy bit and the slot of the cell's organism. The
+ * organisms themselves are still objects on the heap: every live organism costs the same as
+ * with any other storage, and each cell an organism has been put in since the field was last
+ * cleared holds a slot, so the heap grows with the number of organisms but not with the
+ * number of cells. A cell keeps its slot when another organism is put in it. Slots are
+ * handed out without locking and live in chunks which are only allocated once a slot in
+ * them is first used. A field with more than about two thousand million cells, or with more
+ * live organisms than the heap can hold, still cannot be simulated.
+ *
+ * Every record is stamped with the generation it was written in. Clearing the field just
+ * starts a new generation, so records from before the clear count as empty without the
+ * whole file having to be rewritten.
+ *
+ * The file is deleted as soon as it has been mapped, so it takes up disk space only while
+ * the mappings are in use. Where the system does not allow that, it is deleted when the
+ * storage is closed, or failing that when the program exits. The mappings themselves are
+ * let go of on close and unmapped once they are garbage collected.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class MappedFieldStorage extends FieldStorage
+{
+    // The number of bytes in each cell record
+    private static final int RECORD_SHIFT = 3;
+    // Where each part of a record lies within it
+    private static final int GENERATION = 0;
+    private static final int RESIDENT = 4;
+    // The occupancy bit of the resident word; its other bits hold the cell's slot plus one,
+    // or 0 if the cell has no slot
+    private static final int OCCUPIED = 1 << 31;
+    private static final int SLOT_BITS = ~OCCUPIED;
+    // The file is mapped in segments of 1 << SEGMENT_SHIFT cells (one gigabyte each)
+    private static final int SEGMENT_SHIFT = 27;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+    // The slots are allocated in chunks of 1 << CHUNK_SHIFT
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    // The number of cells in the field
+    private final int size;
+    // The mapped segments of the cell file (emptied once the storage is closed)
+    private final MappedByteBuffer[] segments;
+    // The cell file, until it has been deleted
+    private File file;
+    // The chunks of slots holding the field's organisms (null until a slot in them is used)
+    private final AtomicReferenceArray<Organism[]> chunks;
+    // The number of slots handed out since the field was last cleared
+    private final AtomicInteger slotCount = new AtomicInteger();
+    // Records stamped with any other generation are treated as empty
+    private int generation;
+
+    /**
+     * Create empty storage for a field with the given number of cells, backed by
+     * a temporary file.
+     *
+     * @param size The number of cells in the field.
+     */
+    public MappedFieldStorage(int size)
+    {
+        this.size = size;
+        segments = new MappedByteBuffer[(int) (((long) size + SEGMENT_MASK) >> SEGMENT_SHIFT)];
+        // No more slots are ever needed than there are cells
+        chunks = new AtomicReferenceArray<>((int) (((long) size + CHUNK_MASK) >> CHUNK_SHIFT));
+        generation = 1;
+        try {
+            file = File.createTempFile("field", ".cells");
+            file.deleteOnExit();
+            try(RandomAccessFile cellFile = new RandomAccessFile(file, "rw");
+                FileChannel channel = cellFile.getChannel()) {
+                for(int segment = 0; segment < segments.length; segment++) {
+                    long first = (long) segment << SEGMENT_SHIFT;
+                    long cells = Math.min(size - first, 1L << SEGMENT_SHIFT);
+                    segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                                    first << RECORD_SHIFT, cells << RECORD_SHIFT);
+                }
+            }
+            // The mappings keep the file's contents for as long as they are in use
+            deleteFile();
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException("Could not map the field's cell file", e);
+        }
+    }
+
+    /**
+     * Return the organism in a cell.
+     *
+     * @param index The index of the cell.
+     * @return The organism in that cell, or null if there is none.
+     */
+    @Override
+    public Organism get(int index)
+    {
+        MappedByteBuffer segment = segments[index >>> SEGMENT_SHIFT];
+        int record = (index & SEGMENT_MASK) << RECORD_SHIFT;
+        if(segment.getInt(record + GENERATION) != generation) {
+            return null;
+        }
+        int slot = (segment.getInt(record + RESIDENT) & SLOT_BITS) - 1;
+        if(slot < 0) {
+            return null;
+        }
+        return chunks.get(slot >>> CHUNK_SHIFT)[slot & CHUNK_MASK];
+    }
+
+    /**
+     * Put an organism in a cell, in the cell's slot. A cell without a slot is given the
+     * next one.
+     *
+     * @param index The index of the cell.
+     * @param anOrganism The organism to store.
+     */
+    @Override
+    public void set(int index, Organism anOrganism)
+    {
+        MappedByteBuffer segment = segments[index >>> SEGMENT_SHIFT];
+        int record = (index & SEGMENT_MASK) << RECORD_SHIFT;
+        int resident = 0;
+        if(segment.getInt(record + GENERATION) == generation) {
+            resident = segment.getInt(record + RESIDENT);
+        }
+        else {
+            segment.putInt(record + GENERATION, generation);
+            segment.putInt(record + RESIDENT, 0);
+        }
+        int slot = (resident & SLOT_BITS) - 1;
+        if(slot < 0) {
+            if(anOrganism == null) {
+                return;
+            }
+            slot = slotCount.getAndIncrement();
+            segment.putInt(record + RESIDENT, (resident & OCCUPIED) | (slot + 1));
+        }
+        chunkOf(slot)[slot & CHUNK_MASK] = anOrganism;
+    }
+
+    /**
+     * Return the chunk holding a slot, allocating it if it has not been used yet. Two
+     * threads may both allocate the same chunk; only the first one stored is kept.
+     *
+     * @param slot The slot.
+     * @return The chunk holding it.
+     */
+    private Organism[] chunkOf(int slot)
+    {
+        int chunk = slot >>> CHUNK_SHIFT;
+        Organism[] slots = chunks.get(chunk);
+        if(slots == null) {
+            chunks.compareAndSet(chunk, null, new Organism[1 << CHUNK_SHIFT]);
+            slots = chunks.get(chunk);
+        }
+        return slots;
+    }
+
+    /**
+     * @param index The index of a cell.
+     * @return Whether the occupancy bit of that cell is set.
+     */
+    @Override
+    public boolean isOccupied(int index)
+    {
+        if(index < 0 || index >= size) {
+            return false;
+        }
+        MappedByteBuffer segment = segments[index >>> SEGMENT_SHIFT];
+        int record = (index & SEGMENT_MASK) << RECORD_SHIFT;
+        return segment.getInt(record + GENERATION) == generation
+            && (segment.getInt(record + RESIDENT) & OCCUPIED) != 0;
+    }
+
+    /**
+     * Set or clear the occupancy bit of a cell.
+     *
+     * @param index The index of the cell.
+     * @param occupied The new value of the bit.
+     */
+    @Override
+    public void setOccupied(int index, boolean occupied)
+    {
+        MappedByteBuffer segment = segments[index >>> SEGMENT_SHIFT];
+        int record = (index & SEGMENT_MASK) << RECORD_SHIFT;
+        if(segment.getInt(record + GENERATION) != generation) {
+            if(!occupied) {
+                return;
+            }
+            segment.putInt(record + GENERATION, generation);
+            segment.putInt(record + RESIDENT, 0);
+        }
+        int resident = segment.getInt(record + RESIDENT);
+        if(occupied) {
+            resident |= OCCUPIED;
+        }
+        else {
+            resident &= ~OCCUPIED;
+        }
+        segment.putInt(record + RESIDENT, resident);
+    }
+
+    /**
+     * Return the occupancy bits of three cells which follow each other in a row.
+     *
+     * @param start The index of the first of the three cells.
+     * @return The three occupancy bits, lowest bit first.
+     */
+    @Override
+    public int occupiedBits(int start)
+    {
+        int bits = 0;
+        for(int i = 0; i < 3; i++) {
+            if(isOccupied(start + i)) {
+                bits |= 1 << i;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Empty every cell by starting a new generation of records, and let go of the organisms
+     * in the slots used since the last clear. The chunks are kept for the next generation.
+     */
+    @Override
+    public void clear()
+    {
+        generation++;
+        int used = slotCount.getAndSet(0);
+        for(int chunk = 0; chunk << CHUNK_SHIFT < used; chunk++) {
+            Arrays.fill(chunks.get(chunk), 0, Math.min(used - (chunk << CHUNK_SHIFT), 1 << CHUNK_SHIFT), null);
+        }
+    }
+
+    /**
+     * Let go of the mappings and the organisms in the slots, and delete the cell file if
+     * it could not be deleted before. The storage cannot be used afterwards.
+     */
+    @Override
+    public void close()
+    {
+        Arrays.fill(segments, null);
+        for(int chunk = 0; chunk < chunks.length(); chunk++) {
+            chunks.set(chunk, null);
+        }
+        slotCount.set(0);
+        deleteFile();
+    }
+
+    /**
+     * Delete the cell file, unless it has been deleted already or the system will not
+     * delete it yet.
+     */
+    private void deleteFile()
+    {
+        if(file != null && file.delete()) {
+            file = null;
+        }
+    }
+}
@@ -13,6 +13,8 @@ public class MarineAlgae extends Plant
     private static final double CHANCE_OF_SPREAD = 0.025;
     // Food units/points provided when the plant is eaten.
     private static final int FOOD_VALUE = 15;
+    // The constants above, as the simulation reads them (see SpeciesProfile)
+    static final SpeciesProfile PROFILE = SpeciesProfile.plant(FOOD_VALUE, MAX_AGE, CHANCE_OF_SPREAD);
     
     /**
      * Creates a MarineAlgae plant at a specific location
@@ -21,39 +23,18 @@ public class MarineAlgae extends Plant
      */
     public MarineAlgae(Location location)
     {
-        super(location);
+        super(location, Species.MARINE_ALGAE);
     }
 
     /**
-     * Returns the maximum age of MarineAlgae
+     * Returns the species of MarineAlgae
      * 
-     * @return The maximum age of MarineAlgae in steps
+     * @return The species of this plant
      */
     @Override
-    protected int getMaxAge()
+    public Species getSpecies()
     {
-        return MAX_AGE;
-    }
-    
-    /**
-     * Returns default probability that MarineAlgae spreads per step
-     * 
-     * @return chance of spread within range 0.0 - 1.0
-     */
-    @Override
-    protected double getChanceOfSpread()
-    {
-        return CHANCE_OF_SPREAD;
-    }
-    
-    /**
-     * Returns the food value of the MarineAlgae
-     * 
-     * @return The number of food units/points provided when eaten
-     */
-    protected int foodValue()
-    {
-        return FOOD_VALUE;
+        return Species.MARINE_ALGAE;
     }
     
     /**
@@ -1,4 +1,3 @@
-import java.util.List;
 import java.util.Set;
 /**
  * The Octopus class creates a Predator with specfic features which match an octopus. Built with constant fields
@@ -11,6 +10,8 @@ public class Octopus extends Predator
 {
     // How much a octopus can eat before being full i.e. at its stomach capacity
     private static final int MAX_FOOD_LEVEL = 120;
+    // The hunger level increase caused by eating one: none, as predators cannot be eaten
+    private static final int FOOD_VALUE = 0;
     // The max number of children that be can produced in one pregnancy
     private static final int MAX_LITTER_SIZE = 8;
     // The chance of a successful pregnancy, considering a partner a valid partner has been found    
@@ -29,9 +30,11 @@ public class Octopus extends Predator
     private static final int DISEASE_DURATION = 20;
     
     // Times of day that an octopus hunts (is active)
-    private final Set<TimeOfDay> ACTIVE_TIMES = Set.of(TimeOfDay.MIDNIGHT, TimeOfDay.DAWN);
-    // The types of species that a tiger shark can consume.
-    private final List<Class<?>> EDIBLE_ORGANISMS = List.of(HermitCrab.class, Krill.class); //Krill.class);
+    private static final Set<TimeOfDay> ACTIVE_TIMES = Set.of(TimeOfDay.MIDNIGHT, TimeOfDay.DAWN);
+    // The constants above, as the simulation reads them (see SpeciesProfile)
+    static final SpeciesProfile PROFILE = SpeciesProfile.animal(FOOD_VALUE, DEATH_AGE, BREEDING_AGE,
+            BREEDING_PROBABILITY, PREGNANCY_DURATION, MAX_LITTER_SIZE, MAX_FOOD_LEVEL, INITIAL_FOOD_LEVEL,
+            INITIAL_INFECTION_CHANCE, DISEASE_SPREAD, DISEASE_DURATION, ACTIVE_TIMES);
 
     
 
@@ -40,97 +43,16 @@ public class Octopus extends Predator
      */
     public Octopus(Location location)
     {
-        super(location);
+        super(location, Species.OCTOPUS);
     }
     
     /**
-     * Class to check whether the organism attempted to being eaten is consumable for a octopus.
-     * @param organism - the organism that is being eaten
-     * @return boolean - whether or not the organism can be eaten or not
+     * @return - the species of an octopus
      */
     @Override
-    protected boolean isEdible(Organism organism) 
+    public Species getSpecies()
     {
-        for ( Class<?> organismClass : EDIBLE_ORGANISMS) {
-            if (organismClass.isInstance(organism)) {
-                return true;
-            }
-        }
-        return false;
-    }
-    
-    /**
-     * Class to check whether a octopus is active at the current time.
-     * @param currentTime - the current time in the simulation
-     * @return - whether or not the octopus is active during this time of day
-     */
-    public boolean isActiveAt(TimeOfDay currentTime)
-    {
-        if (ACTIVE_TIMES.contains(currentTime)) {
-            return true;
-        }
-        else {
-            return false;
-        }
-    }
-    
-    /**
-     * GETTER for MAX_FOOD_LEVEL
-     * @return - constant max food level
-     */
-    @Override
-    public int maxFoodLevel() 
-    {
-        return MAX_FOOD_LEVEL;
-    }
-    
-    /**
-     * Returns 0 (as predators cannot be eaten)
-     * @return 0 - an octopus is a predator that cannot be eaten
-     */
-    @Override
-    protected int foodValue() {
-        return 0; 
-    }
-    
-    /**
-     * GETTER for MAX_LITTER_SIZE
-     * @return - max number of children born after a pregnancy
-     */
-    @Override
-    public int maxLitterSize()
-    {
-        return MAX_LITTER_SIZE;
-    }
-    
-    /**
-     * GETTER for BREEDING_PROBABILITY
-     * @return - the chance the octopus can breed, considering that they have found a suitable partner
-     */
-    @Override
-    public double breedingProbability()
-    {
-        return BREEDING_PROBABILITY;
-    }
-    
-    /**
-     * GETTER for BREEDING_AGE
-     * @return - minimum age required to breed
-     */
-    @Override   
-    public int breedingAge()
-    {
-        return BREEDING_AGE;
-    }
-    
-    /**
-     * GETTER for PREGNANCY_DURATION
-     * @return - number of days untill animal gives birth
-     */
-    @Override
-    public int pregnancyDuration()
-    {
-        return PREGNANCY_DURATION;
+        return Species.OCTOPUS;
     }
     
     /**
@@ -142,40 +64,4 @@ public class Octopus extends Predator
     public Animal createYoung(Location location) {
         return new Octopus(location); // new object in specified locationil07
     }
-    
-    /**
-     * @return - the maximum age a tiger shark can live up to
-     */
-    @Override
-    public int deathAge()
-    {
-        return DEATH_AGE;
-    }
-    
-    /**
-     * @return - chance of being infected from the start of the simulation
-     */
-    @Override
-    public double initialInfectionChance()
-    {
-        return INITIAL_INFECTION_CHANCE;
-    }
-    
-    /**
-     * @return - the probability that an adjacent animal will get infected
-     */
-    @Override
-    public double diseaseSpread()
-    {
-        return DISEASE_SPREAD;
-    }
-    
-    /**
-     * @return - the duration an octopus lasts once a terminal disease has infected them
-     */
-    @Override
-    public int diseaseDuration()
-    {
-        return DISEASE_DURATION;
-    }
 }
\ No newline at end of file
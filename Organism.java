@@ -14,15 +14,50 @@ public abstract class Organism
 {
     private boolean alive;
     private Location location;
+    // The id of this organism's species (its Species ordinal), kept so it costs no call to look up
+    private final int speciesId;
+    // The constants of this organism's species (see SpeciesProfile)
+    private final SpeciesProfile profile;
+    // The pool of the simulation that created this organism, which it returns to when it dies
+    private final OrganismPool pool = OrganismPool.getPool();
+    // The field this organism was most recently placed in, its slot in that field's organism list
+    // and the index of its cell there
+    private Field field;
+    private int fieldSlot;
+    private int fieldCell;
+    // The field it was placed in before that (the other half of the simulator's double buffer)
+    // and the index of its cell there
+    private Field previousField;
+    private int previousCell;
     
     /**
      * Constructor for objects of class Organism
+     * @param location - the location of the organism
+     * @param species - the species of the organism
      */
-    protected Organism(Location location)
+    protected Organism(Location location, Species species)
     {
         // initialise instance variables
         alive = true;                       // all organisms are alive to begin with
         this.location = location;           // represents the location which they are currently in 
+        speciesId = species.getId();
+        profile = species.getProfile();
+    }
+    
+    /**
+     * Bring a dead organism back to life at a new location, as though it had just been created
+     * (see OrganismPool). Subclasses reset their own state as well.
+     * @param - the location of the reused organism
+     */
+    protected void reuse(Location location)
+    {
+        alive = true;
+        this.location = location;
+        field = null;
+        fieldSlot = 0;
+        fieldCell = 0;
+        previousField = null;
+        previousCell = 0;
     }
     
     /**
@@ -34,6 +69,36 @@ public abstract class Organism
      * @param - the current time in the simulation
      */
     public abstract void act(Field currentField, Field nextFieldState, TimeOfDay currentTime);
+    
+    /**
+     * @return - whether this organism has nothing to do this step but stay where it is, so
+     *           the stepper can claim its cell for it instead of making it act
+     */
+    public boolean isIdle()
+    {
+        return false;
+    }
+    
+    /**
+     * @return - the species of this organism
+     */
+    public abstract Species getSpecies();
+
+    /**
+     * @return - the id of the species of this organism, which indexes the diet table (see Species)
+     */
+    public int getSpeciesId()
+    {
+        return speciesId;
+    }
+
+    /**
+     * @return - the constants of this organism's species, as plain fields
+     */
+    public final SpeciesProfile getProfile()
+    {
+        return profile;
+    }
 
     /**
      * @return - whether or not the organism is alive or not
@@ -48,8 +113,28 @@ public abstract class Organism
      */
     protected void setDead()   // we use protected here since animals/plants need to be able to access it, but we do not want everything to access it
     {
+        // an organism only goes back to the pool once, however often it is killed
+        if (alive) {
+            pool.release(this);
+        }
         alive = false;
         location = null;
+        
+        // the cells this organism still occupies become free in both fields it may be sitting in
+        if (field != null) {
+            field.markDead(this, fieldCell);
+        }
+        if (previousField != null) {
+            previousField.markDead(this, previousCell);
+        }
+    }
+    
+    /**
+     * @return - the pool this organism returns to when it dies, which its offspring are taken from
+     */
+    protected OrganismPool getOrganismPool()
+    {
+        return pool;
     }
     
     /**
@@ -69,6 +154,60 @@ public abstract class Organism
         this.location = newLocation;
     }
     
+    /**
+     * Record where this organism sits in a field's organism list, so the field can remove it
+     * without searching the list
+     * @param - the field the organism has been placed in
+     * @param - the organism's position in that field's list
+     * @param - the index of the organism's cell in that field
+     */
+    protected void setFieldSlot(Field field, int slot, int cell)
+    {
+        if (this.field != field) {
+            previousField = this.field;
+            previousCell = fieldCell;
+        }
+        this.field = field;
+        this.fieldSlot = slot;
+        this.fieldCell = cell;
+    }
+    
+    /**
+     * Record that this organism has been moved to another slot of the same field's organism list
+     * @param - the organism's new position in that field's list
+     */
+    protected void setFieldSlot(int slot)
+    {
+        this.fieldSlot = slot;
+    }
+    
+    /**
+     * @param - a field which may hold this organism
+     * @return - the index of the organism's cell in that field (kept after death), or -1 if it is in neither of its last two fields
+     */
+    protected int getFieldCell(Field field)
+    {
+        if (this.field == field) {
+            return fieldCell;
+        }
+        if (previousField == field) {
+            return previousCell;
+        }
+        return -1;
+    }
+    
+    /**
+     * @param - a field which may hold this organism
+     * @return - the organism's position in that field's organism list, or -1 if it was last placed in a different field
+     */
+    protected int getFieldSlot(Field field)
+    {
+        if (this.field == field) {
+            return fieldSlot;
+        }
+        return -1;
+    }
+    
     
     
 }
\ No newline at end of file
@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An OrganismPool keeps the organisms of a simulation which have died, so that newborn
+ * animals and new seedlings can reuse them instead of being allocated afresh. Once the
+ * simulation has settled, about as many organisms die each step as are born, and almost
+ * none need allocating.
+ *
+ * A dead organism may still be referred to for a while: from the field it died in, until
+ * that field is cleared at the start of the next step, and from the claims and the other
+ * half of the simulator's double buffer. So, like the ids of the AnimalStateStore, an
+ * organism released during a step can only be reused two steps later (see endStep).
+ *
+ * Each simulator has its own pool. Organisms return to the pool of the simulation that
+ * created them; new organisms are taken from the pool last used on the creating thread
+ * (see use). Organisms may be released and reused from several threads at once while a
+ * step is updated in parallel. Each thread does so through its own lane, which keeps the
+ * organisms the thread has released and a small batch of free organisms it has taken from
+ * the pool, so the pool's lock is only taken when a batch runs out. The lanes are gathered
+ * into the pool at the end of every step.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class OrganismPool
+{
+    // Number of organisms the lists start with room for; they double whenever they fill up.
+    private static final int INITIAL_CAPACITY = 256;
+    // The pool each thread takes organisms from; a thread which has not used one gets its own.
+    private static final ThreadLocal<OrganismPool> current = ThreadLocal.withInitial(OrganismPool::new);
+    // The number of free organisms of a species a thread takes from the pool at once
+    private static final int BATCH = 16;
+
+    // The organisms free for reuse, and how many there are, indexed by species id
+    private final Organism[][] free = new Organism[Species.count()][INITIAL_CAPACITY];
+    private final int[] freeCounts = new int[Species.count()];
+    // Organisms released during the current step and during the previous step
+    private Organism[] releasedNow = new Organism[INITIAL_CAPACITY];
+    private Organism[] releasedBefore = new Organism[INITIAL_CAPACITY];
+    private int releasedNowCount, releasedBeforeCount;
+    // The lane of every thread which has used the pool, and the current thread's lane
+    private final List<Lane> lanes = new ArrayList<>();
+    private final ThreadLocal<Lane> lane = ThreadLocal.withInitial(this::newLane);
+
+    /**
+     * @return The pool new organisms created on the current thread are taken from.
+     */
+    public static OrganismPool getPool()
+    {
+        return current.get();
+    }
+
+    /**
+     * Make this the pool new organisms created on the current thread are taken from.
+     */
+    public void use()
+    {
+        current.set(this);
+    }
+
+    /**
+     * Return a dead organism to the pool. It becomes free for reuse two steps later.
+     *
+     * @param anOrganism The organism which has died.
+     */
+    public void release(Organism anOrganism)
+    {
+        lane.get().release(anOrganism);
+    }
+
+    /**
+     * Bring a free organism of a species back to life at a location, with its state set as
+     * though it had just been created.
+     *
+     * @param species The species of the organism wanted.
+     * @param location The location of the organism.
+     * @return The organism, or null if none of that species is free; the caller then
+     *         creates a new one.
+     */
+    public Organism reuse(Species species, Location location)
+    {
+        Lane threadLane = lane.get();
+        int id = species.getId();
+        if(threadLane.takenCounts[id] == 0 && !takeBatch(id, threadLane)) {
+            return null;
+        }
+        Organism anOrganism = threadLane.taken[id][--threadLane.takenCounts[id]];
+        threadLane.taken[id][threadLane.takenCounts[id]] = null;
+        anOrganism.reuse(location);
+        return anOrganism;
+    }
+
+    /**
+     * Move a batch of the free organisms of a species into a thread's lane.
+     *
+     * @param id The species id.
+     * @param threadLane The lane of the current thread, which has none of that species left.
+     * @return false if no organism of that species is free.
+     */
+    private synchronized boolean takeBatch(int id, Lane threadLane)
+    {
+        int count = Math.min(BATCH, freeCounts[id]);
+        for(int n = 0; n < count; n++) {
+            threadLane.taken[id][n] = free[id][--freeCounts[id]];
+            free[id][freeCounts[id]] = null;
+        }
+        threadLane.takenCounts[id] = count;
+        return count > 0;
+    }
+
+    /**
+     * Create the lane of a thread which has not used the pool before.
+     *
+     * @return The new lane.
+     */
+    private Lane newLane()
+    {
+        Lane newLane = new Lane();
+        synchronized(lanes) {
+            lanes.add(newLane);
+        }
+        return newLane;
+    }
+
+    /**
+     * Add an organism to the free organisms of its species.
+     *
+     * @param anOrganism The organism.
+     */
+    private void free(Organism anOrganism)
+    {
+        int id = anOrganism.getSpeciesId();
+        if(freeCounts[id] == free[id].length) {
+            free[id] = Arrays.copyOf(free[id], free[id].length * 2);
+        }
+        free[id][freeCounts[id]++] = anOrganism;
+    }
+
+    /**
+     * Mark the end of a simulation step. The organisms the threads released join those
+     * released during the step, those they took but did not use are free again, and
+     * organisms released two steps ago become free.
+     */
+    public void endStep()
+    {
+        for(Lane threadLane : lanes) {
+            for(int n = 0; n < threadLane.releasedCount; n++) {
+                if(releasedNowCount == releasedNow.length) {
+                    releasedNow = Arrays.copyOf(releasedNow, releasedNow.length * 2);
+                }
+                releasedNow[releasedNowCount++] = threadLane.released[n];
+            }
+            for(int id = 0; id < free.length; id++) {
+                for(int n = 0; n < threadLane.takenCounts[id]; n++) {
+                    free(threadLane.taken[id][n]);
+                }
+            }
+            threadLane.clear();
+        }
+        for(int i = 0; i < releasedBeforeCount; i++) {
+            Organism anOrganism = releasedBefore[i];
+            releasedBefore[i] = null;
+            free(anOrganism);
+        }
+        Organism[] recycled = releasedBefore;
+        releasedBefore = releasedNow;
+        releasedBeforeCount = releasedNowCount;
+        releasedNow = recycled;
+        releasedNowCount = 0;
+    }
+
+    /**
+     * Forget every organism in the pool (used when the simulation is reset).
+     */
+    public void clear()
+    {
+        for(int id = 0; id < free.length; id++) {
+            Arrays.fill(free[id], 0, freeCounts[id], null);
+            freeCounts[id] = 0;
+        }
+        Arrays.fill(releasedNow, 0, releasedNowCount, null);
+        Arrays.fill(releasedBefore, 0, releasedBeforeCount, null);
+        releasedNowCount = 0;
+        releasedBeforeCount = 0;
+        for(Lane threadLane : lanes) {
+            threadLane.clear();
+        }
+    }
+
+    /**
+     * The organisms one thread has released since the pool last gathered its lanes, and
+     * the free organisms it has taken from the pool but not yet reused.
+     */
+    private static class Lane
+    {
+        private Organism[] released = new Organism[INITIAL_CAPACITY];
+        private int releasedCount;
+        private final Organism[][] taken = new Organism[Species.count()][BATCH];
+        private final int[] takenCounts = new int[Species.count()];
+
+        /**
+         * Record that an organism has been released.
+         */
+        void release(Organism anOrganism)
+        {
+            if(releasedCount == released.length) {
+                released = Arrays.copyOf(released, releasedCount * 2);
+            }
+            released[releasedCount++] = anOrganism;
+        }
+
+        /**
+         * Forget the organisms in the lane.
+         */
+        void clear()
+        {
+            Arrays.fill(released, 0, releasedCount, null);
+            releasedCount = 0;
+            for(int id = 0; id < taken.length; id++) {
+                Arrays.fill(taken[id], 0, takenCounts[id], null);
+                takenCounts[id] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelStepper makes every organism in a field act for one step using several threads.
+ *
+ * The field is divided into square tiles (the chunks of its FieldLayout) and the tiles are
+ * coloured like a checkerboard with four colours, so that no two tiles of the same colour
+ * touch, not even at a corner. The step runs in four phases, one per colour, and within a
+ * phase the tiles are updated in parallel. While acting, an organism only changes its own
+ * state and that of its neighbours (by eating or infecting them); where it and its
+ * offspring will be is only claimed, and the caller settles the claims once all tiles are
+ * done (see Field.commitClaims). Tiles of the same colour therefore never touch the same
+ * organism.
+ *
+ * Work is shared out by the number of organisms rather than by area: the tiles of a phase
+ * are split into tasks holding roughly equal numbers of organisms, empty tiles are skipped,
+ * and the pool's work stealing evens out whatever imbalance is left.
+ *
+ * Within a tile organisms act in cell order, and tiles of the same phase cannot affect one
+ * another, so the order the threads happen to run the tiles in makes no difference. Random
+ * numbers are drawn by cell rather than from a shared sequence (see Randomizer), so a step
+ * gives exactly the same result whatever the number of threads. With one thread the tiles
+ * are simply updated in turn.
+ *
+ * A stepper may be limited to a band of rows, so that only the organisms in those rows act.
+ * The field of a ShardWorker holds copies of its neighbours' edge rows around its own band;
+ * those copies are there to be looked at, eaten or infected, but never act.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class ParallelStepper
+{
+    // Stop splitting a phase into smaller tasks once a task has fewer organisms than this.
+    private static final int MIN_TASK_ORGANISMS = 2048;
+    // The number of tile colours, and so the number of phases in a step.
+    private static final int PHASES = 4;
+    // The thread pools shared by every stepper in this process, by number of threads. Each
+    // simulation's tasks carry their own random numbers and stores, so steppers can share a
+    // pool, and a pool's threads are daemons which die with the process.
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    // The shared threads the tiles are updated on (null when there is only one)
+    private final ForkJoinPool pool;
+    // The width of the field, and the number of tiles across it and in total
+    private final int width, tilesAcross, tileCount;
+    // The rows whose organisms act (from firstRow up to but not including lastRow)
+    private final int firstRow, lastRow;
+    // Added to a cell's index to give the subject its random numbers are drawn for
+    private final int subjectOffset;
+    // The number of organisms in each tile this step
+    private final int[] tileSizes;
+    // For each phase, the tiles holding organisms this step and how many there are
+    private final int[][] phaseTiles;
+    private final int[] phaseTileCount;
+    // For each phase, the running total of organisms over its tiles (one entry more than tiles)
+    private final int[][] phaseWeights;
+
+    /**
+     * Create a stepper for fields with the given layout.
+     *
+     * @param layout The shape of the fields to be updated.
+     * @param threads The number of threads to use.
+     */
+    public ParallelStepper(FieldLayout layout, int threads)
+    {
+        this(layout, threads, 0, layout.getDepth(), 0);
+    }
+
+    /**
+     * Create a stepper which only makes the organisms in a band of rows act.
+     *
+     * @param layout The shape of the fields to be updated.
+     * @param threads The number of threads to use.
+     * @param firstRow The first row whose organisms act.
+     * @param lastRow The row after the last one whose organisms act.
+     * @param subjectOffset Added to a cell's index to give the subject of its organism's
+     *                      random numbers, so that a band can draw the numbers the same
+     *                      cells would draw in the whole ocean.
+     */
+    public ParallelStepper(FieldLayout layout, int threads, int firstRow, int lastRow, int subjectOffset)
+    {
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
+        this.subjectOffset = subjectOffset;
+        pool = threads > 1 ? POOLS.computeIfAbsent(threads, ForkJoinPool::new) : null;
+        width = layout.getWidth();
+        tilesAcross = layout.getChunksAcross();
+        tileCount = tilesAcross * layout.getChunksDown();
+        tileSizes = new int[tileCount];
+        phaseTiles = new int[PHASES][tileCount];
+        phaseTileCount = new int[PHASES];
+        phaseWeights = new int[PHASES][tileCount + 1];
+    }
+
+    /**
+     * Make every organism in the current field act once. The cells they claim in the next
+     * field are left for the caller to settle.
+     *
+     * @param currentField The field representing the current state.
+     * @param nextFieldState The field the next state is built into.
+     * @param currentTime The time of day during this step.
+     */
+    public void act(Field currentField, Field nextFieldState, TimeOfDay currentTime)
+    {
+        currentField.freeze();
+        countTiles(currentField);
+        if(pool != null) {
+            // Every birth needs a cell next to its parent, which bounds how many animals
+            // can be registered while the threads are running
+            AnimalStateStore.getStore().reserve(
+                Math.min(currentField.getOrganisms().size() * FieldLayout.MAX_ADJACENT, currentField.getSize()),
+                pool.getParallelism());
+            // and every plant spreads to at most one cell
+            PlantStateStore.getStore().reserve(currentField.getOrganisms().size(), pool.getParallelism());
+        }
+        for(int phase = 0; phase < PHASES; phase++) {
+            if(pool != null) {
+                pool.invoke(new TileTask(phase, 0, phaseTileCount[phase],
+                                         currentField, nextFieldState, currentTime,
+                                         Randomizer.current(), AnimalStateStore.getStore(),
+                                         PlantStateStore.getStore(), OrganismPool.getPool()));
+            }
+            else {
+                for(int n = 0; n < phaseTileCount[phase]; n++) {
+                    actTile(phaseTiles[phase][n], currentField, nextFieldState, currentTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Make every organism in a tile act, in cell order. Each organism's random
+     * numbers are drawn for its cell. An idle organism is only kept in its cell.
+     *
+     * @param tile The tile to update.
+     * @param currentField The field representing the current state.
+     * @param nextFieldState The field the next state is built into.
+     * @param currentTime The time of day during this step.
+     */
+    private void actTile(int tile, Field currentField, Field nextFieldState, TimeOfDay currentTime)
+    {
+        int tileRow = tile / tilesAcross;
+        int tileFirstRow = Math.max(tileRow << FieldLayout.CHUNK_SHIFT, firstRow);
+        int firstCol = (tile - tileRow * tilesAcross) << FieldLayout.CHUNK_SHIFT;
+        int tileLastRow = Math.min((tileRow << FieldLayout.CHUNK_SHIFT) + FieldLayout.CHUNK_SIZE, lastRow);
+        int lastCol = Math.min(firstCol + FieldLayout.CHUNK_SIZE, width);
+        for(int row = tileFirstRow; row < tileLastRow; row++) {
+            for(int index = row * width + firstCol; index < row * width + lastCol; index++) {
+                Organism anOrganism = currentField.getOrganismAt(index);
+                // Organisms killed earlier in the step stay in their cells, but have nothing to do,
+                // and idle ones (plants between spreading) just stay where they are
+                if(anOrganism != null && anOrganism.isAlive()) {
+                    if(anOrganism.isIdle()) {
+                        nextFieldState.claimStay(anOrganism, index);
+                    }
+                    else {
+                        Randomizer.setSubject(index + subjectOffset);
+                        anOrganism.act(currentField, nextFieldState, currentTime);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the organisms in each tile, and work out which tiles each phase has to update.
+     * Every organism in the field's list sits in its own cell, so the tiles' cells hold
+     * exactly the organisms of the list. The field has just been frozen, which sweeps the
+     * dead out of its list, so only living organisms are counted. Organisms outside the
+     * stepper's rows are left out.
+     *
+     * @param currentField The field whose organisms are about to act.
+     */
+    private void countTiles(Field currentField)
+    {
+        Arrays.fill(tileSizes, 0);
+        int firstCell = firstRow * width;
+        int lastCell = lastRow * width;
+        for(Organism anOrganism : currentField.getOrganisms()) {
+            int cell = anOrganism.getFieldCell(currentField);
+            if(cell >= firstCell && cell < lastCell) {
+                tileSizes[tileOf(cell)]++;
+            }
+        }
+        Arrays.fill(phaseTileCount, 0);
+        for(int tile = 0; tile < tileCount; tile++) {
+            if(tileSizes[tile] > 0) {
+                int phase = phaseOf(tile);
+                int n = phaseTileCount[phase]++;
+                phaseTiles[phase][n] = tile;
+                phaseWeights[phase][n + 1] = phaseWeights[phase][n] + tileSizes[tile];
+            }
+        }
+    }
+
+    /**
+     * @return The tile holding a cell.
+     */
+    private int tileOf(int index)
+    {
+        int row = index / width;
+        int col = index - row * width;
+        return (row >> FieldLayout.CHUNK_SHIFT) * tilesAcross + (col >> FieldLayout.CHUNK_SHIFT);
+    }
+
+    /**
+     * @return The phase (colour) of a tile: tiles whose rows and columns differ
+     *         by one never share a colour.
+     */
+    private int phaseOf(int tile)
+    {
+        int tileRow = tile / tilesAcross;
+        int tileCol = tile - tileRow * tilesAcross;
+        return ((tileRow & 1) << 1) | (tileCol & 1);
+    }
+
+    /**
+     * Updates a run of the tiles of one phase, splitting itself in two by
+     * organism count while the run is big enough to be worth sharing.
+     */
+    private class TileTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int phase, from, to;
+        private final Field currentField, nextFieldState;
+        private final TimeOfDay currentTime;
+        // The simulation's random numbers, animal and plant stores and organism pool, for the worker threads to use
+        private final Randomizer randomizer;
+        private final AnimalStateStore animalStates;
+        private final PlantStateStore plantStates;
+        private final OrganismPool organismPool;
+
+        /**
+         * Create a task for the tiles from (inclusive) to to (exclusive) of a phase.
+         */
+        TileTask(int phase, int from, int to, Field currentField, Field nextFieldState,
+                 TimeOfDay currentTime, Randomizer randomizer, AnimalStateStore animalStates,
+                 PlantStateStore plantStates, OrganismPool organismPool)
+        {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+            this.currentField = currentField;
+            this.nextFieldState = nextFieldState;
+            this.currentTime = currentTime;
+            this.randomizer = randomizer;
+            this.animalStates = animalStates;
+            this.plantStates = plantStates;
+            this.organismPool = organismPool;
+        }
+
+        /**
+         * Update the tiles, or split them between two smaller tasks.
+         */
+        @Override
+        protected void compute()
+        {
+            int[] weights = phaseWeights[phase];
+            if(to - from > 1 && weights[to] - weights[from] > MIN_TASK_ORGANISMS) {
+                // Split where the organisms, not the tiles, divide in half
+                int half = (weights[from] + weights[to]) >>> 1;
+                int split = Arrays.binarySearch(weights, from + 1, to, half);
+                if(split < 0) {
+                    split = -split - 1;
+                }
+                split = Math.max(from + 1, Math.min(split, to - 1));
+                invokeAll(new TileTask(phase, from, split, currentField, nextFieldState, currentTime,
+                                       randomizer, animalStates, plantStates, organismPool),
+                          new TileTask(phase, split, to, currentField, nextFieldState, currentTime,
+                                       randomizer, animalStates, plantStates, organismPool));
+                return;
+            }
+            randomizer.use();
+            animalStates.use();
+            plantStates.use();
+            organismPool.use();
+            for(int n = from; n < to; n++) {
+                actTile(phaseTiles[phase][n], currentField, nextFieldState, currentTime);
+            }
+        }
+    }
+}
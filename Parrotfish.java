@@ -1,4 +1,3 @@
-import java.util.List;
 import java.util.Set;
 /**
  * The Parrotfish class creates a Prey with specifc featues which match a parrotfish. Built with constant fields
@@ -32,105 +31,26 @@ public class Parrotfish extends Prey
     
     // Times of the day that a parrotfish eats (is active)
     private static final Set<TimeOfDay> ACTIVE_TIMES = Set.of(TimeOfDay.MIDDAY, TimeOfDay.DAWN);
-    // The types of species that a parrotfish can consume
-    private static final List<Class<?>> EDIBLE_ORGANISMS = List.of(MarineAlgae.class, Kelp.class);
+    // The constants above, as the simulation reads them (see SpeciesProfile)
+    static final SpeciesProfile PROFILE = SpeciesProfile.animal(FOOD_VALUE, DEATH_AGE, BREEDING_AGE,
+            BREEDING_PROBABILITY, PREGNANCY_DURATION, MAX_LITTER_SIZE, MAX_FOOD_LEVEL, INITIAL_FOOD_LEVEL,
+            INITIAL_INFECTION_CHANCE, DISEASE_SPREAD, DISEASE_DURATION, ACTIVE_TIMES);
     
     /**
      * Constructor for objects of class Parrotfish
      */
     public Parrotfish (Location location)
     {
-        super(location);
+        super(location, Species.PARROTFISH);
     }
     
     /**
-     * @return - value gained by organism eating a parrotfish.
+     * @return - the species of a parrotfish
      */
     @Override
-    protected int foodValue() 
+    public Species getSpecies()
     {
-        return FOOD_VALUE;
-    }
-    
-    /**
-     * Class to check whether the organism attempted to being eaten is consumable for a parrotfish.
-     * @param organism - the organism that is being eaten
-     * @return boolean - whether or not the organism can be eaten or not
-     */
-    @Override
-    protected boolean isEdible(Organism organism) 
-    {
-        for ( Class<?> organismClass : EDIBLE_ORGANISMS) {
-            if (organismClass.isInstance(organism)) {
-                return true;
-            }
-        }
-        return false;
-    }
-    
-    /**
-     * Class to check whether a parrotfish is active at the current time.
-     * @param currentTime - the current time in the simulation
-     * @return - whether or not the parrotfish is active during this time of day
-     */
-    public boolean isActiveAt(TimeOfDay currentTime)
-    {
-        if (ACTIVE_TIMES.contains(currentTime)) {
-            return true;
-        }
-        else {
-            return false;
-        }
-    }
-    
-    /**
-     * GETTER for MAX_FOOD_LEVEL
-     * @return - constant max food level
-     */
-    @Override
-    public int maxFoodLevel() 
-    {
-        return MAX_FOOD_LEVEL;
-    }
-    
-    /**
-     * GETTER for MAX_LITTER_SIZE
-     * @return - max number of children born after a pregnancy
-     */
-    @Override
-    public int maxLitterSize()
-    {
-        return MAX_LITTER_SIZE;
-    }
-    
-    /**
-     * GETTER for BREEDING_PROBABILITY
-     * @return - the chance the parrotfish can breed, considering that they have found a suitable partner
-     */
-    @Override
-    public double breedingProbability()
-    {
-        return BREEDING_PROBABILITY;
-    }
-    
-    /**
-     * GETTER for PREGNANCY_DURATION
-     * @return - number of days untill animal gives birth
-     */
-    @Override
-    public int pregnancyDuration()
-    {
-        return PREGNANCY_DURATION;
-    }
-    
-    /**
-     * GETTER for BREEDING_AGE
-     * @return - minimum age required to breed
-     */
-    @Override   
-    public int breedingAge()
-    {
-        return BREEDING_AGE;
+        return Species.PARROTFISH;
     }
     
     /**
@@ -142,40 +62,4 @@ public class Parrotfish extends Prey
     public Animal createYoung(Location location) {
         return new Parrotfish(location);
     }
-    
-    /**
-     * @return - the maximum age a parrotfish can live up to
-     */
-    @Override
-    public int deathAge()
-    {
-        return DEATH_AGE;
-    }
-    
-    /**
-     * @return - chance of being infected from the start of the simulation
-     */
-    @Override
-    public double initialInfectionChance()
-    {
-        return INITIAL_INFECTION_CHANCE;
-    }
-    
-    /**
-     * @return - the probability that an adjacent animal will get infected
-     */
-    @Override
-    public double diseaseSpread()
-    {
-        return DISEASE_SPREAD;
-    }
-    
-    /**
-     * @return - the duration a parrotfish lasts once a terminal disease has got them
-     */
-    @Override
-    public int diseaseDuration()
-    {
-        return DISEASE_DURATION;
-    }
 }
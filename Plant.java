@@ -1,5 +1,4 @@
 import java.util.Random;
-import java.util.List;             
 /**
  * Superclass for all plants in the simulation.
  * 
@@ -13,37 +12,54 @@ import java.util.List;
  */
 public abstract class Plant extends Organism
 {
-    // plants current age in steps 
-    private int age;            
-    private static final Random rand = Randomizer.getRandom();    
+    // Store holding the age of every plant, which also works out when each one dies
+    private final PlantStateStore store = PlantStateStore.getStore();
+    // This plant's id within the state store (a new one each time the plant is reused)
+    private int stateId;
+    private static final Random rand = Randomizer.getRandom(RandomPurpose.SPREAD);    
     
     /**
      * Constructor for objects of class Plant
      * Constructs a plant at the specific location with initial age of 0
      * 
      * @param location The location where this plant is initially.
+     * @param species The species of this plant.
      */
-    public Plant(Location location)
+    public Plant(Location location, Species species)
     {
-        super(location);
-        age = 0;
+        super(location, species);
+        stateId = store.register(this);
     }
 
     /**
-     * Returns the maximum age (in steps) of the plant before it dies
-     * (this is the default max age, not weather affected max age)
+     * Bring a dead plant back to life at a new location, as a new seedling
      * 
-     * @return default maximum age of the plant
+     * @param location The location where the seedling is
      */
-    protected abstract int getMaxAge();
-    
+    @Override
+    protected void reuse(Location location)
+    {
+        super.reuse(location);
+        stateId = store.register(this);
+    }
+
+    /**
+     * @return current age (int)
+     */
+    public int getAge()
+    {
+        return store.getAge(stateId);
+    }
+
     /**
-     * Returns the default probability for the plant to spread in a given step
-     * (this is the default probability, not weather affected probability)
+     * Set the plant's age, for a plant carried over from another part of the ocean
      * 
-     * @return default spreading probability (range 0.0 - 1.0)
+     * @param age The plant's age in steps
      */
-    protected abstract double getChanceOfSpread();
+    protected void setAge(int age)
+    {
+        store.setAge(stateId, age);
+    }
 
     /**
      * Create a new seedling of this plant type at a specific location (field)
@@ -54,24 +70,25 @@ public abstract class Plant extends Organism
     protected abstract Plant newSeedling(Location location);
     
     /**
-     * Returns the food value of this plant if eaten
-     * 
-     * @return The number of food units/points provided when this plant is eaten.
+     * Marks the plant as dead and hands its slot in the state store back.
      */
-    protected abstract int foodValue();    
+    @Override
+    protected void setDead()
+    {
+        store.release(stateId);
+        super.setDead();
+    }
     
     /**
-     * Increase the plant's age by one step (in simulation)
-     * If the age reaches or surpasses default maximum age then the plant is marked as dead.
+     * Returns maximum age of plant after applying effects of weather
+     * (worked out once per species and weather, see SpeciesProfile)
+     * 
+     * @param weather The current weather type which is "affecting" the plant
+     * @return The maximum age of plant after effects of weather
      */
-    protected void incrementAge()
+    protected int getWeatherAffectedMaxAge(WeatherType weather)
     {
-        age++;
-        
-        // once they reach the max age, they will die.
-        if (age >= getMaxAge()) {
-            setDead();
-        }
+        return getProfile().getMaxAge(weather);
     }
     
     /**
@@ -80,13 +97,12 @@ public abstract class Plant extends Organism
      * - Storm decreases maximum age slightly
      * Returned value can not be less than 1
      * 
+     * @param maxAge The default maximum age of the plant
      * @param weather The current weather type which is "affecting" the plant
      * @return The maximum age of plant after effects of weather
      */
-    protected int getWeatherAffectedMaxAge(WeatherType weather)
+    static int weatherAffectedMaxAge(int maxAge, WeatherType weather)
     {
-        int maxAge = getMaxAge();
-        
         // lives slightly longer if it rains        
         if (weather == WeatherType.RAIN) {
             maxAge += 2;
@@ -106,20 +122,15 @@ public abstract class Plant extends Organism
     }
       
     /**
-     * Attempts to spread by creating seedling in neighbouring free location
-     * Spreading probability affected by weather
+     * Calculates the chance of the plant spreading after applying effects of weather
      * - Rain increases spreading probability while storm decreases it.
      * 
-     * @param currentField The current simulation field (used to query adjacent fields and weather)
-     * @param nextFieldState The next simulation field where new seedlings are placed
+     * @param spreadChance The default spreading probability of the plant
+     * @param weather The current weather type which is "affecting" the plant
+     * @return The spreading probability after effects of weather
      */
-    protected void spread(Field currentField, Field nextFieldState)
+    static double weatherAffectedChanceOfSpread(double spreadChance, WeatherType weather)
     {
-        // default spread chance
-        double spreadChance = getChanceOfSpread();
-        // current weather type since weather type affects how plants spread
-        WeatherType weather = currentField.getWeather();
-        
         // if the weather type is rain, the plants have a higher chance of spreading
         if (weather == WeatherType.RAIN) {
             spreadChance *= 1.5;
@@ -136,13 +147,34 @@ public abstract class Plant extends Organism
             spreadChance = 1.0;        
         }
         
-        if (rand.nextDouble() <= spreadChance) {
-            List<Location> freeFields = currentField.getFreeAdjacentLocations(getLocation());
+        return spreadChance;
+    }
+      
+    /**
+     * Attempts to spread by creating seedling in neighbouring free location
+     * Spreading probability affected by weather (see weatherAffectedChanceOfSpread)
+     * The state store draws the steps the plant spreads at (see PlantStateStore.takeSpread)
+     * 
+     * @param currentField The current simulation field (used to query adjacent fields and weather)
+     * @param nextFieldState The next simulation field where new seedlings claim their cells
+     */
+    protected void spread(Field currentField, Field nextFieldState)
+    {
+        // the chance of spreading in the current weather, since weather type affects how plants spread
+        double spreadChance = getProfile().getChanceOfSpread(currentField.getWeather());
+        
+        if (store.takeSpread(stateId, spreadChance, rand)) {
+            int index = currentField.indexOf(getLocation());
+            int free = currentField.getFreeAdjacentIndex(index);
             
-            if (!freeFields.isEmpty()) {
-                Location free = freeFields.get(0);
-                Plant seedling = newSeedling(free);
-                nextFieldState.place(seedling, free);
+            if (free >= 0) {
+                Location freeLocation = currentField.getLocation(free);
+                // a dead plant of the same species is reused if there is one
+                Plant seedling = (Plant) getOrganismPool().reuse(getSpecies(), freeLocation);
+                if (seedling == null) {
+                    seedling = newSeedling(freeLocation);
+                }
+                nextFieldState.claim(seedling, free, index, Field.CLAIM_SEEDLING);
             }
     
         }
@@ -153,30 +185,32 @@ public abstract class Plant extends Organism
      * The plant ages, might die if reaches or exceeds weather adjusted maximum age,
      * remains in its current location in the next field state and could potentially
      * spread to nearby free location through new seedling being produced.
+     * Between the steps it dies or spreads at, the plant is idle and does not act (see isIdle).
      * 
      * @param currentField The field representing the current state
      * @param nextFieldState The field into which this organism places itself and any any offspring for next step
      */
     public void act(Field currentField, Field nextFieldState, TimeOfDay currentTime)
     {
-        incrementAge();
-        
-        // check to prevent dead plants from doing anything
-        if (!isAlive()) {
-            return;           
-        }
-                
-        WeatherType weather = currentField.getWeather();
-        int maxAge = getWeatherAffectedMaxAge(weather);
-        
-        // if the age has reached max age then the plant will die 
-        // this is since the max age could be exceeded due to weather reducing it
-        if (age >= maxAge) {
+        // the state store finds the plants which reach their maximum age in this step's weather
+        // (which can be lower than the default maximum age) as the step begins
+        if (store.takeDeath(stateId)) {
             setDead();
             return;
         }
         
-        nextFieldState.place(this, getLocation());
+        int index = currentField.indexOf(getLocation());
+        nextFieldState.claim(this, index, index, Field.CLAIM_STAY);
         spread(currentField, nextFieldState);
-    }    
+    }
+    
+    /**
+     * @return Whether the plant has nothing to do this step but stay where it is: it does
+     *         not die or spread this step
+     */
+    @Override
+    public boolean isIdle()
+    {
+        return store.isIdle(stateId);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,412 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PlantStateStore keeps the age of every plant, as the step it was born at, and works out
+ * when each plant dies of old age, as AnimalStateStore does for animals. Every plant is
+ * given an id when it is created, and that id is its index into the store's arrays.
+ *
+ * A plant dies once it reaches its maximum age, or the shorter maximum age of the current
+ * weather. Its death is put on a timing wheel at the earliest step any weather could bring
+ * it. When that step comes and the weather lets the plant live on, its entry is moved on a
+ * step at a time, since the weather may change, until the weather lets it die or it reaches
+ * the maximum age it has in every weather. So each plant needs attention only at the few
+ * steps where its death depends on the weather.
+ *
+ * Deaths are not carried out by the store: a plant due to die is put in a death mask, and
+ * consumes its entry when it next acts (see takeDeath).
+ *
+ * The store also draws the steps at which each plant spreads. Rather than drawing every
+ * step whether the plant spreads, it draws how many steps until it next does, which has
+ * the same distribution, and draws again once the plant has spread or the weather (and so
+ * its chance of spreading) changes. A plant which neither dies nor spreads in a step is
+ * idle, and is only kept in its cell (see isIdle).
+ *
+ * Ids of dead plants are recycled two steps after the death, for the same reason as those
+ * of animals. Each simulator has its own store; plants are registered in the store last
+ * used on the creating thread (see use). Threads register and release plants without
+ * locking, through their own StoreLane, as with the AnimalStateStore. Room for the
+ * seedlings of a step is reserved before the step is updated in parallel (see reserve).
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class PlantStateStore
+{
+    // Number of slots the arrays start with; they double whenever they fill up.
+    private static final int INITIAL_CAPACITY = 1024;
+    // The store each thread registers new plants in; a thread which has not used one gets its own.
+    private static final ThreadLocal<PlantStateStore> current = ThreadLocal.withInitial(PlantStateStore::new);
+    // The number of ids a thread takes from the store at once
+    private static final int ID_BATCH = 64;
+
+    // The plant owning each id (null if the id is not in use)
+    private Plant[] owners;
+    // Whether the plant owning each id is still alive (1) or not (0)
+    private int[] live;
+    // The step each plant was born at, and the step it is next checked for death at
+    private int[] bornAt;
+    private int[] checkAt;
+    // Set for every plant which dies of old age this step
+    private int[] dying;
+    // The step each plant next spreads at, and the weather that was drawn for (null if
+    // not drawn yet)
+    private int[] spreadAt;
+    private WeatherType[] spreadWeather;
+
+    // One past the highest id handed out so far
+    private int size;
+    // Ids which are free to be handed out again
+    private int[] freeIds;
+    private int freeCount;
+    // Ids released during the current step and during the previous step
+    private int[] releasedNow, releasedBefore;
+    private int releasedNowCount, releasedBeforeCount;
+
+    // The number of steps begun since the store was created or cleared
+    private int step;
+    // The weather during the current step
+    private WeatherType weather = WeatherType.CLEAR;
+    // The deaths of old age still to come, by the step they may fall due
+    private final TimingWheel deaths = new TimingWheel();
+    // The lane of every thread which has used the store, and the current thread's lane
+    private final List<StoreLane> lanes = new ArrayList<>();
+    private final ThreadLocal<StoreLane> lane = ThreadLocal.withInitial(this::newLane);
+
+    /**
+     * Create an empty store.
+     */
+    public PlantStateStore()
+    {
+        owners = new Plant[INITIAL_CAPACITY];
+        live = new int[INITIAL_CAPACITY];
+        bornAt = new int[INITIAL_CAPACITY];
+        checkAt = new int[INITIAL_CAPACITY];
+        dying = new int[INITIAL_CAPACITY];
+        spreadAt = new int[INITIAL_CAPACITY];
+        spreadWeather = new WeatherType[INITIAL_CAPACITY];
+        freeIds = new int[INITIAL_CAPACITY];
+        releasedNow = new int[INITIAL_CAPACITY];
+        releasedBefore = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Provide the store new plants created on the current thread are registered in.
+     * @return The current plant state store.
+     */
+    public static PlantStateStore getStore()
+    {
+        return current.get();
+    }
+
+    /**
+     * Make this the store new plants created on the current thread are registered in.
+     */
+    public void use()
+    {
+        current.set(this);
+    }
+
+    /**
+     * Give a newly created plant an id, born at the current step, and schedule its death.
+     *
+     * @param plant The plant being created.
+     * @return The id of the plant in this store.
+     */
+    public int register(Plant plant)
+    {
+        StoreLane ids = lane.get();
+        int id = ids.takeId();
+        if(id < 0) {
+            id = takeBatch(ids);
+        }
+        owners[id] = plant;
+        live[id] = 1;
+        bornAt[id] = step;
+        dying[id] = 0;
+        spreadWeather[id] = null;
+        scheduleDeath(id);
+        return id;
+    }
+
+    /**
+     * Release the id of a plant which has died. The id is only reused two steps later.
+     *
+     * @param id The id of the dead plant.
+     */
+    public void release(int id)
+    {
+        if(live[id] == 0) {
+            return;
+        }
+        live[id] = 0;
+        lane.get().release(id);
+    }
+
+    /**
+     * Give a thread's lane a batch of free ids, taking new ones at the end of the arrays
+     * once the free ids run out, and hand out the first of them.
+     *
+     * @param ids The lane of the current thread, which has no ids left.
+     * @return An id for the current thread to use.
+     */
+    private synchronized int takeBatch(StoreLane ids)
+    {
+        for(int n = 0; n < ID_BATCH; n++) {
+            if(freeCount > 0) {
+                ids.addId(freeIds[--freeCount]);
+            }
+            else {
+                if(size == owners.length) {
+                    grow();
+                }
+                ids.addId(size++);
+            }
+        }
+        return ids.takeId();
+    }
+
+    /**
+     * Create the lane of a thread which has not used the store before.
+     *
+     * @return The new lane.
+     */
+    private StoreLane newLane()
+    {
+        StoreLane newLane = new StoreLane();
+        synchronized(lanes) {
+            lanes.add(newLane);
+        }
+        return newLane;
+    }
+
+    /**
+     * Gather every thread's lane into the store (see AnimalStateStore.gatherLanes).
+     */
+    private void gatherLanes()
+    {
+        for(StoreLane threadLane : lanes) {
+            threadLane.drain(this::free, this::addReleased, deaths);
+        }
+    }
+
+    /**
+     * Add an id to the free ids.
+     *
+     * @param id The id.
+     */
+    private void free(int id)
+    {
+        if(freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Add an id to those released during the current step.
+     *
+     * @param id The id.
+     */
+    private void addReleased(int id)
+    {
+        if(releasedNowCount == releasedNow.length) {
+            releasedNow = Arrays.copyOf(releasedNow, releasedNow.length * 2);
+        }
+        releasedNow[releasedNowCount++] = id;
+    }
+
+    /**
+     * Make sure the given number of plants can be registered without the arrays growing,
+     * while the given number of threads each hold a batch of ids.
+     *
+     * @param count The number of plants which may be registered.
+     * @param threads The number of threads which may register them.
+     */
+    public void reserve(int count, int threads)
+    {
+        while(owners.length - size + freeCount < count + threads * ID_BATCH) {
+            grow();
+        }
+    }
+
+    /**
+     * Begin a new simulation step: move the store's count of steps on, and put every plant
+     * which reaches its maximum age in this step's weather in the death mask. Called at the
+     * start of every step, before any plant acts.
+     *
+     * @param weather The weather the plants act in during this step.
+     */
+    public void beginStep(WeatherType weather)
+    {
+        gatherLanes();
+        step++;
+        this.weather = weather;
+        deaths.takeDue(step, this::checkDeath);
+    }
+
+    /**
+     * Put a plant in the death mask if it has reached its maximum age in the current
+     * weather, or else check it again next step. An entry on the wheel is out of date if its
+     * plant has died, or has been rescheduled since (see setAge); it is dropped, and the id's
+     * current entry, if any, is left to do the check.
+     *
+     * @param id The id of the plant.
+     */
+    private void checkDeath(int id)
+    {
+        if(live[id] == 0 || checkAt[id] != step) {
+            return;
+        }
+        SpeciesProfile profile = owners[id].getProfile();
+        int age = step - bornAt[id];
+        if(age >= profile.getMaxAge() || age >= owners[id].getWeatherAffectedMaxAge(weather)) {
+            dying[id] = 1;
+        }
+        else {
+            checkAt[id] = step + 1;
+            lane.get().schedule(id, step + 1);
+        }
+    }
+
+    /**
+     * Arrange for a plant to be checked for death at the first step at which any weather
+     * could kill it. If that step has already begun the plant is checked now.
+     *
+     * @param id The id of the plant.
+     */
+    private void scheduleDeath(int id)
+    {
+        int dueStep = bornAt[id] + owners[id].getProfile().getShortestMaxAge();
+        if(dueStep > step) {
+            checkAt[id] = dueStep;
+            lane.get().schedule(id, dueStep);
+        }
+        else {
+            checkAt[id] = step;
+            checkDeath(id);
+        }
+    }
+
+    /**
+     * Return whether a plant dies of old age this step, and clear its entry of the death mask.
+     *
+     * @param id The id of the plant.
+     * @return true if the plant has died of old age.
+     */
+    public boolean takeDeath(int id)
+    {
+        boolean dies = dying[id] != 0;
+        dying[id] = 0;
+        return dies;
+    }
+
+    /**
+     * Return whether a plant spreads this step, and if it does, draw the next step it
+     * spreads at. If the weather has changed since the plant's last draw, its chance of
+     * spreading has too, so the step it next spreads at is drawn again first.
+     *
+     * @param id The id of the plant.
+     * @param chance The plant's chance of spreading in any one step of the current weather.
+     * @param rand The random numbers to draw with.
+     * @return true if the plant spreads this step.
+     */
+    public boolean takeSpread(int id, double chance, Random rand)
+    {
+        if(spreadWeather[id] != weather) {
+            spreadWeather[id] = weather;
+            spreadAt[id] = step - 1 + Randomizer.nextGeometric(rand, chance);
+        }
+        if(spreadAt[id] > step) {
+            return false;
+        }
+        spreadAt[id] = step + Randomizer.nextGeometric(rand, chance);
+        return true;
+    }
+
+    /**
+     * Return whether a plant has nothing to do in this step: it does not die, and it does
+     * not spread, or need the step it spreads at drawn again.
+     *
+     * @param id The id of the plant.
+     * @return true if the plant is idle.
+     */
+    public boolean isIdle(int id)
+    {
+        return dying[id] == 0 && spreadWeather[id] == weather && spreadAt[id] > step;
+    }
+
+    /**
+     * @param id The id of a plant.
+     * @return The age of that plant.
+     */
+    public int getAge(int id)
+    {
+        return step - bornAt[id];
+    }
+
+    /**
+     * Set the age of a plant, and reschedule its death to match.
+     * @param id The id of the plant.
+     * @param value The new value.
+     */
+    public void setAge(int id, int value)
+    {
+        bornAt[id] = step - value;
+        scheduleDeath(id);
+    }
+
+    /**
+     * Mark the end of a simulation step. Ids released two steps ago become free.
+     */
+    public void endStep()
+    {
+        gatherLanes();
+        for(int i = 0; i < releasedBeforeCount; i++) {
+            int id = releasedBefore[i];
+            owners[id] = null;
+            free(id);
+        }
+        int[] recycled = releasedBefore;
+        releasedBefore = releasedNow;
+        releasedBeforeCount = releasedNowCount;
+        releasedNow = recycled;
+        releasedNowCount = 0;
+    }
+
+    /**
+     * Forget every plant in the store (used when the simulation is reset).
+     */
+    public void clear()
+    {
+        Arrays.fill(owners, 0, size, null);
+        Arrays.fill(live, 0, size, 0);
+        size = 0;
+        freeCount = 0;
+        releasedNowCount = 0;
+        releasedBeforeCount = 0;
+        step = 0;
+        weather = WeatherType.CLEAR;
+        deaths.clear();
+        for(StoreLane threadLane : lanes) {
+            threadLane.clear();
+        }
+    }
+
+    /**
+     * Double the capacity of the arrays.
+     */
+    private void grow()
+    {
+        int capacity = owners.length * 2;
+        owners = Arrays.copyOf(owners, capacity);
+        live = Arrays.copyOf(live, capacity);
+        bornAt = Arrays.copyOf(bornAt, capacity);
+        checkAt = Arrays.copyOf(checkAt, capacity);
+        dying = Arrays.copyOf(dying, capacity);
+        spreadAt = Arrays.copyOf(spreadAt, capacity);
+        spreadWeather = Arrays.copyOf(spreadWeather, capacity);
+    }
+}
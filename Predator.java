@@ -1,6 +1,3 @@
-import java.util.List;
-import java.util.Iterator;
-
 /**
  * The Predator class inherits the Animal class, making methods specific towards how predators should
  * act.
@@ -12,54 +9,49 @@ public abstract class Predator extends Animal
 {
     // The initial hunger level (Predators can last 30 steps with no food from the beginning of the
     // simulation.
-    private static final int INITIAL_FOOD_LEVEL = 60;
+    protected static final int INITIAL_FOOD_LEVEL = 60;
 
     /**
      * Constructor for objects of class Predator
      */
     
-    public Predator(Location location)
+    public Predator(Location location, Species species)
     {
-        super(location);
+        super(location, species);
     }
     
     /**
-     * @return - inital hunger level.
-     */
-    public int initialFoodLevel() 
-    {
-        return INITIAL_FOOD_LEVEL;
-    }
-
-    /**
-     * Checks whether there is a consumable organism nearby to eat and move to its location.
+     * Checks whether there is a consumable organism nearby to eat and move to its cell.
      * The class also updates the hunger values of the organism, if the attempt to eat was successful.
+     * The neighbours are visited in a random order without creating any objects.
      * @param - the current field (allowing us to see adjacent organisms)
-     * @return - either a valid location where food is or no location (if no organism is found)
+     * @param - the index of this animal's cell
+     * @return - the index of the cell where food was eaten, or -1 if none was
      * 
      */
-    public Location getFoodLocation(Field field) {
-        List<Location> adjacentLocations = field.getAdjacentLocations(getLocation()); // creates a list of the adjacent locations, from the current location
-        Iterator<Location> it = adjacentLocations.iterator();
+    public int findFood(Field field, int index) {
+        int order = field.randomOrder(); // the adjacent locations are visited in a random order
         
-        Location foodLocation = null;
-        while (foodLocation == null && it.hasNext()) { // goes through each adjacent location until either a location is found or there are no more places in the list 
-            Location nextLocation = it.next(); // stores the next location in the list.
-            Organism organism = field.getOrganismAt(nextLocation); // finds the organism at specified location "nextLocation"
-            if (organism != null && isEdible(organism) && organism.isAlive()) { // checks whether there is a valid organism that is alive and can be eaten.
+        for (int position = 0; position < FieldLayout.MAX_ADJACENT; position++) { // goes through each adjacent location until either food is found or there are no more neighbours
+            int next = field.getAdjacentIndex(index, order, position); // index of the next adjacent location
+            if (next < 0) {
+                continue; // no neighbour in this direction (edge of the field)
+            }
+            Organism organism = field.getOrganismAt(next); // finds the organism at the adjacent location
+            if (organism != null && organism.isAlive() && isEdible(organism)) { // checks whether there is a valid organism that is alive and can be eaten.
                 
                 if (organism instanceof Animal animal)
                 {                     
                     if (checkHungerMax(animal)) { // if eating the organism breaches the max value, it cannot eat it
-                        return null;
+                        return -1;
                     }
                     animal.setDead(); // kills the animal being eating
                     changeHungerValues(animal); // updates the animals hunger
-                    foodLocation = nextLocation; // changes the location to the eaten animals location
+                    return next; // the animal moves to the eaten animal's cell
                 }
             }
         }
-        return foodLocation;
+        return -1;
     }
     
     /**
@@ -68,7 +60,7 @@ public abstract class Predator extends Animal
      */
     public boolean checkHungerMax(Animal animal)
     {  
-        return (animal.foodValue() + this.hungerLevel) >= this.maxFoodLevel();
+        return (animal.getProfile().getFoodValue() + getHungerLevel()) >= getProfile().getMaxFoodLevel();
     }
     
     
@@ -77,7 +69,7 @@ public abstract class Predator extends Animal
      * @param - the animal that is being eaten
      */
     public void changeHungerValues(Animal animal) {
-            eat(animal.foodValue());
+            eat(animal.getProfile().getFoodValue());
     }
     
     
@@ -90,60 +82,57 @@ public abstract class Predator extends Animal
      */
     public void act(Field currentField, Field nextFieldState, TimeOfDay currentTime) {
         
-        incrementAge(); // Increases the age by 1
-        decrementHunger();  // Decreases food level by 1  
-        updateInfection(); // checks and updates infection (already 
+        updateCounters(); // Increases the age by 1, decreases food level by 1 and checks and updates infection
         spreadInfection(currentField); // spreads infection to adjacent peopke
         
         WeatherType weather = currentField.getWeather(); // current weather
         
-        int hungerHit = getWeatherAffectedHungerHit(weather);
-        for (int i = 0; i < hungerHit; i++) {
-            decrementHunger();
-        }
+        applyWeatherHunger(weather);
         
         // all logic for decreasing hunger inside decrementHunger 
         if (isAlive()) {
+            int index = currentField.indexOf(getLocation());
             
              // Storm reduces movement which means the animal will stay in its place sometimes
             if ((weather == WeatherType.STORM) && rand.nextDouble() < 0.5) {
-                // 50% chance of moving
-                nextFieldState.place(this, getLocation());
+                // 50% chance of moving; the pregnancy is held up by the lost step too
+                postponePregnancy();
+                nextFieldState.claim(this, index, index, Field.CLAIM_STAY);
                 return;
                 
             }       
             
-            List<Location> freeLocations = nextFieldState.getFreeAdjacentLocations(getLocation());
             // Pregnancy cycle.
-            if (pregnant) {
-                pregnancyCounter--;
-            
-                if (pregnancyCounter <= 0) { // if pregnancy ends, birth is given and cycle reset
-                    endPregnancy(nextFieldState);
+            if (isPregnant()) {
+                if (isPregnancyDue()) { // if pregnancy ends, birth is given and cycle reset
+                    endPregnancy(currentField, nextFieldState);
                 }}
                 // if pregnancy hasn't started, a check is done to see if animal can get pregnant.
             else if (checkPregnancyPossible(currentField)) {startPregnancy();}
             
             // if the animal isn't active, it stays still in its position and doesn't eat.
-            if(!isActiveAt(currentTime)) {
-                nextFieldState.place(this, getLocation());
+            if(!getProfile().isActiveAt(currentTime)) {
+                nextFieldState.claim(this, index, index, Field.CLAIM_STAY);
                 return;
             }
             
             // Logic behind searching and finding food 
-            Location nextLocation = getFoodLocation(currentField);
-            if (nextLocation == null && ! freeLocations.isEmpty()) { // No food location found AND there is an  empty space to move to
-                nextLocation = freeLocations.remove(0);              // The program moves to the animal to that location.
+            int next = findFood(currentField, index);
+            if (next < 0) { // No food found, so the animal moves to a random neighbouring cell.
+                // Cells which were free at the start of the step come first. Failing those, it tries a
+                // cell whose occupant may move away; if the occupant stays, the animal stays too, and
+                // it only dies of overcrowding if every neighbour's occupant stays (see Field.commitClaims).
+                int freeMask = currentField.getFreeAdjacentMask(index);
+                next = currentField.pickAdjacentIndex(index, freeMask != 0 ? freeMask : currentField.getAdjacentMask(index));
             }
             
-            // Logic behind moving position -> If a position was found, it is set as the new location.
-            if(nextLocation != null) {
-                setLocation(nextLocation);
-                nextFieldState.place(this, nextLocation);
+            // Logic behind moving position -> If a cell was found, the animal claims it as its new location.
+            if(next >= 0) {
+                nextFieldState.claim(this, next, index, Field.CLAIM_MOVE);
             }
             
-            else { // No free positions means the animal dies due to overcrowding
-                setDead();
+            else { // A field of one cell has nowhere to move to
+                nextFieldState.claim(this, index, index, Field.CLAIM_STAY);
             }
         }
     }
@@ -0,0 +1,31 @@
+/**
+ * Enumeration class RandomPurpose - the kinds of random decision made in the simulation.
+ * Each purpose draws from its own stream (see Randomizer), so adding or removing a draw
+ * of one kind never changes the numbers another kind of decision sees.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public enum RandomPurpose
+{
+    // Decisions not covered by any of the purposes below
+    GENERAL,
+    // Which organism, if any, starts in each cell
+    POPULATE,
+    // The weather changes
+    WEATHER,
+    // The order neighbouring cells are tried in, and which free cell is picked
+    MOVEMENT,
+    // Which of several organisms claiming the same cell gets it
+    CLAIM,
+    // Whether an animal stays put during a storm
+    BEHAVIOUR,
+    // Whether an animal conceives, and the size of its litter
+    BREEDING,
+    // Whether an animal starts infected or catches an infection
+    INFECTION,
+    // The sex of a new animal
+    SEX,
+    // Whether a plant spreads
+    SPREAD;
+}
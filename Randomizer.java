@@ -1,10 +1,24 @@
+import java.util.Arrays;
 import java.util.Random;
 
 /**
- * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
- * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
+ * Provide control over the randomization of the simulation. By using the fixed seed,
+ * repeated runs will perform exactly the same (which helps with testing). Set
  * 'useShared' to false to get different random behaviour every time.
  * 
+ * Random numbers are not taken one after another from a single generator. Instead every
+ * draw is worked out from its position: the seed, the step, the subject (normally the cell
+ * of the organism which is acting), the purpose of the draw and how many draws of that
+ * purpose the subject has already made. The numbers an organism sees therefore do not
+ * depend on which organisms acted before it or on which thread it acts on, so a run gives
+ * the same result however many threads it uses, and threads never wait for each other to
+ * draw a number.
+ * 
+ * Each simulator has its own Randomizer, holding the seed and step of its run, so several
+ * simulations can run side by side in one program (see EnsembleRunner). A thread draws for
+ * whichever Randomizer it last used: the simulator uses its own at the start of each step,
+ * and the subject is set (for the current thread) before each organism acts.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
@@ -12,41 +26,199 @@ public class Randomizer
 {
     // The default seed for control of randomization.
     private static final int SEED = 1111;
-    // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
-    // Determine whether a shared random generator is to be provided.
+    // Determine whether the fixed seed is to be used.
     private static final boolean useShared = true;
+    // The subject of draws which concern the whole simulation, such as the weather.
+    public static final int WORLD = -1;
+    // The most tries nextGeometric returns; far enough off never to come, but small enough
+    // to add a step or cell index to without overflowing.
+    public static final int NEVER = Integer.MAX_VALUE / 2;
+    // Constants of the SplitMix64 generator the draws are mixed with.
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long STEP_GAMMA = 0xC2B2AE3D27D4EB4FL;
+    private static final long SUBJECT_GAMMA = 0x165667B19E3779F9L;
+    // The number of purposes draws can be made for.
+    private static final int PURPOSES = RandomPurpose.values().length;
+
+    // The randomizer used by threads which have not been given one.
+    private static final Randomizer shared = new Randomizer();
+    // One generator per purpose; they share no state, so any thread may use them at once.
+    private static final Random[] streams = makeStreams();
+    // The randomizer and subject of each thread, and the number of draws it has made for each purpose.
+    private static final ThreadLocal<Position> position = ThreadLocal.withInitial(Position::new);
+
+    // The seed of this run.
+    private final long seed;
+    // The current step.
+    private volatile int step;
 
     /**
-     * Constructor for objects of class Randomizer
+     * Create a randomizer with the default seed (or a random one if 'useShared' is false).
      */
     public Randomizer()
     {
+        this(useShared ? SEED : new Random().nextLong());
+    }
+
+    /**
+     * Create a randomizer with the given seed.
+     * @param seed The seed of the run.
+     */
+    public Randomizer(long seed)
+    {
+        this.seed = seed;
     }
 
     /**
-     * Provide a random generator.
+     * Provide a random generator for draws with no particular purpose.
      * @return A random object.
      */
     public static Random getRandom()
     {
-        if(useShared) {
-            return rand;
+        return getRandom(RandomPurpose.GENERAL);
+    }
+
+    /**
+     * Provide the random generator for one purpose.
+     * @param purpose What the numbers drawn will be used for.
+     * @return A random object.
+     */
+    public static Random getRandom(RandomPurpose purpose)
+    {
+        return streams[purpose.ordinal()];
+    }
+
+    /**
+     * Draw how many tries it takes to first succeed, when each try succeeds with the given
+     * chance (a geometric distribution). Used to skip straight to the next success instead
+     * of drawing for every try.
+     * @param rand The random generator to draw from.
+     * @param chance The chance of each try succeeding.
+     * @return The number of tries, counting the one which succeeds: at least 1, and at most
+     *         NEVER if the chance is so small that success should never come.
+     */
+    public static int nextGeometric(Random rand, double chance)
+    {
+        if(chance >= 1.0) {
+            return 1;
         }
-        else {
-            return new Random();
+        if(chance <= 0.0) {
+            return NEVER;
         }
+        double tries = 1 + Math.floor(Math.log(1.0 - rand.nextDouble()) / Math.log(1.0 - chance));
+        return (int) Math.min(tries, NEVER);
+    }
+
+    /**
+     * Make the current thread draw its numbers for this randomizer, starting with the WORLD subject.
+     */
+    public void use()
+    {
+        position.get().owner = this;
+        setSubject(WORLD);
+    }
+
+    /**
+     * @return The randomizer the current thread draws for.
+     */
+    public static Randomizer current()
+    {
+        return position.get().owner;
+    }
+
+    /**
+     * Set the step that draws are made in. Called by the simulator at the start of each step.
+     * @param currentStep The number of the step.
+     */
+    public void setStep(int currentStep)
+    {
+        step = currentStep;
+    }
+
+    /**
+     * Set what the current thread's following draws concern, and start its draws afresh.
+     * @param subject The cell of the organism about to act, or WORLD.
+     */
+    public static void setSubject(int subject)
+    {
+        Position current = position.get();
+        Randomizer owner = current.owner;
+        current.key = mix(owner.seed + owner.step * STEP_GAMMA + (subject + 1L) * SUBJECT_GAMMA);
+        Arrays.fill(current.draws, 0);
     }
     
     /**
      * Reset the randomization.
-     * This will have no effect if randomization is not 
-     * through a shared Random generator.
+     * Draws start again from step zero.
+     */
+    public void reset()
+    {
+        setStep(0);
+    }
+
+    /**
+     * The SplitMix64 finalizer: spreads the bits of a value over the whole result.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Make the generator of each purpose.
+     */
+    private static Random[] makeStreams()
+    {
+        Random[] made = new Random[PURPOSES];
+        for(int purpose = 0; purpose < PURPOSES; purpose++) {
+            made[purpose] = new Stream(purpose);
+        }
+        return made;
+    }
+
+    /**
+     * The randomizer and subject a thread is drawing for and how many draws it has made of each purpose.
+     */
+    private static class Position
+    {
+        private Randomizer owner = shared;
+        private long key = mix(shared.seed);
+        private final int[] draws = new int[PURPOSES];
+    }
+
+    /**
+     * A generator whose numbers come from the current thread's position rather than from
+     * a seed which changes with every draw. All of Random's methods are built on next,
+     * so they all follow.
      */
-    public static void reset()
+    private static class Stream extends Random
     {
-        if(useShared) {
-            rand.setSeed(SEED);
+        private static final long serialVersionUID = 1L;
+
+        private final int purpose;
+        private final long salt;
+
+        /**
+         * Create the generator for a purpose.
+         */
+        Stream(int purpose)
+        {
+            this.purpose = purpose;
+            salt = mix((purpose + 1L) * GOLDEN_GAMMA);
+        }
+
+        /**
+         * Return the next bits of the current thread's stream for this purpose.
+         */
+        @Override
+        protected int next(int bits)
+        {
+            Position current = position.get();
+            long draw = current.draws[purpose]++;
+            long z = mix((current.key ^ salt) + draw * GOLDEN_GAMMA);
+            return (int) (z >>> (64 - bits));
         }
     }
 }
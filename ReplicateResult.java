@@ -0,0 +1,13 @@
+import java.util.Map;
+
+/**
+ * The ReplicateResult record holds the outcome of one simulation run by an EnsembleRunner:
+ * the seed it was run with, how many steps it lasted and the living population of each
+ * species at the end.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public record ReplicateResult(long seed, int steps, Map<Species, Integer> population)
+{
+}
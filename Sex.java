@@ -12,7 +12,7 @@ public enum Sex
     MALE, FEMALE;
     
     // Random number generator which is used to select a random sex
-    private static Random rand = Randomizer.getRandom();
+    private static Random rand = Randomizer.getRandom(RandomPurpose.SEX);
     /**
      * Return a randomly selected Sex value (MALE or FEMALE)
      * 
@@ -0,0 +1,477 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShardCoordinator runs one simulation split across several worker processes, for oceans
+ * too large for a single JVM or to use every core of a large machine. The ocean is cut
+ * into horizontal bands of rows, and each band is simulated by a ShardWorker process of
+ * its own, started on this machine and reached over loopback sockets.
+ *
+ * The coordinator keeps the clock and the weather, and drives the workers in lockstep:
+ * every step it tells each worker the step, time of day and weather, and waits for all of
+ * them to report their populations before starting the next. The workers exchange the
+ * organisms along their borders with each other (see ShardWorker). The population of the
+ * whole ocean is the sum of the workers' reports.
+ *
+ * The weather follows the same random numbers as a Simulator with the same seed.
+ *
+ * If a worker fails, the others soon fail too, as they lose their connection to it; the
+ * coordinator then stops every worker and reports how each one ended, with the last of
+ * what it wrote to its error stream. Workers which do not stop when asked are killed.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class ShardCoordinator
+{
+    // Messages sent to the workers: the band to simulate, take a step, and stop.
+    public static final byte CONFIGURE = 1;
+    public static final byte STEP = 2;
+    public static final byte STOP = 3;
+    // How long to wait for the workers to connect, how often to check meanwhile that none
+    // has died, and how long to wait for each to exit once stopped
+    private static final int CONNECT_TIMEOUT_MS = 60_000;
+    private static final int CONNECT_CHECK_MS = 500;
+    private static final int EXIT_TIMEOUT_SECONDS = 30;
+    // The dimensions of the whole ocean
+    private final int depth, width;
+    // The number of worker processes, and so of bands
+    private final int workers;
+    // The seed of the simulation's random numbers
+    private final long seed;
+    // Whether to print the population after every step
+    private final boolean report;
+    // Whether the workers count animal hunger down in bulk (see Simulator.setBulkUpdate)
+    private boolean bulkUpdate;
+    // The share of cells filled when the bands are populated (see Simulator.populate)
+    private double density = Simulator.FULL_DENSITY;
+
+    // The clock and weather shared by every band
+    private final Clock clock = new Clock();
+    private final Weather weather = new Weather();
+    private final Randomizer randomizer;
+    // The number of living organisms of each species in the whole ocean after the last
+    // step, indexed by species id
+    private final int[] liveCounts = new int[Species.count()];
+
+    /**
+     * Create a coordinator for a simulation of the given size.
+     *
+     * @param depth Depth of the ocean. Must be at least the number of workers.
+     * @param width Width of the ocean.
+     * @param workers The number of worker processes to split the ocean between.
+     * @param seed The seed of the simulation's random numbers.
+     * @param report Whether to print the population after every step.
+     */
+    public ShardCoordinator(int depth, int width, int workers, long seed, boolean report)
+    {
+        if(workers < 1 || depth < workers || width <= 0) {
+            throw new IllegalArgumentException("Every worker needs at least one row of the ocean");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.workers = workers;
+        this.seed = seed;
+        this.report = report;
+        randomizer = new Randomizer(seed);
+    }
+
+    /**
+     * Run a sharded simulation from the command line.
+     *
+     * @param args The depth and width of the ocean, the number of workers, the number
+     *             of steps and, optionally, the seed, then "bulk" to count hunger in bulk
+     *             and the share of cells to fill at the start, in either order.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if(args.length < 4) {
+            System.out.println("Usage: java ShardCoordinator depth width workers steps [seed [bulk] [density]]");
+            return;
+        }
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1111;
+        ShardCoordinator coordinator = new ShardCoordinator(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                                                            Integer.parseInt(args[2]), seed, true);
+        for(int n = 5; n < args.length; n++) {
+            if(args[n].equals("bulk")) {
+                coordinator.setBulkUpdate(true);
+            }
+            else {
+                coordinator.setDensity(Double.parseDouble(args[n]));
+            }
+        }
+        ReplicateResult result = coordinator.run(Integer.parseInt(args[3]));
+        System.out.println("Steps: " + result.steps() + " Population: " + result.population());
+    }
+
+    /**
+     * Choose whether the workers count animal hunger down in one pass at the start of each
+     * step (see Simulator.setBulkUpdate). Must be called before run.
+     *
+     * @param bulkUpdate true to use the bulk pass.
+     */
+    public void setBulkUpdate(boolean bulkUpdate)
+    {
+        this.bulkUpdate = bulkUpdate;
+    }
+
+    /**
+     * Choose the share of cells filled at the start, as for a Simulator created with a
+     * density. Must be called before run.
+     *
+     * @param density The chance of each cell being filled, or Simulator.FULL_DENSITY to
+     *                draw for every cell.
+     */
+    public void setDensity(double density)
+    {
+        this.density = density;
+    }
+
+    /**
+     * Start the workers and run the simulation for the given number of steps, stopping
+     * early if it ceases to be viable. The workers are stopped at the end, and if
+     * anything goes wrong.
+     *
+     * @param numSteps The number of steps to run for.
+     * @return The seed, the number of steps run and the final population.
+     * @throws IOException If a worker fails or cannot be reached; the message says how
+     *                     each worker ended.
+     */
+    public ReplicateResult run(int numSteps) throws IOException
+    {
+        Process[] processes = new Process[workers];
+        ErrorTail[] errors = new ErrorTail[workers];
+        Socket[] sockets = new Socket[workers];
+        try(ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_CHECK_MS);
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            String classPath = System.getProperty("java.class.path");
+            for(int index = 0; index < workers; index++) {
+                processes[index] = new ProcessBuilder(java, "-cp", classPath, "ShardWorker",
+                                                      String.valueOf(server.getLocalPort()), String.valueOf(index))
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+                errors[index] = new ErrorTail(processes[index].getErrorStream(), index);
+            }
+
+            // Workers introduce themselves with their index and the port their lower
+            // neighbour should connect to; they may arrive in any order
+            DataInputStream[] in = new DataInputStream[workers];
+            DataOutputStream[] out = new DataOutputStream[workers];
+            int[] peerPorts = new int[workers];
+            for(int n = 0; n < workers; n++) {
+                Socket socket = acceptWorker(server, processes);
+                socket.setTcpNoDelay(true);
+                DataInputStream socketIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int index = socketIn.readInt();
+                peerPorts[index] = socketIn.readInt();
+                sockets[index] = socket;
+                in[index] = socketIn;
+                out[index] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+
+            // The cores are shared out between the workers
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+            for(int index = 0; index < workers; index++) {
+                out[index].writeByte(CONFIGURE);
+                out[index].writeInt(depth);
+                out[index].writeInt(width);
+                out[index].writeInt(firstRowOf(index));
+                out[index].writeInt(firstRowOf(index + 1));
+                out[index].writeLong(seed);
+                out[index].writeInt(threads);
+                out[index].writeBoolean(bulkUpdate);
+                out[index].writeDouble(density);
+                out[index].writeInt(index > 0 ? peerPorts[index - 1] : -1);
+                out[index].flush();
+            }
+
+            for(int n = 1; n <= numSteps; n++) {
+                simulateOneStep(in, out);
+                if(report) {
+                    reportStats();
+                }
+                if(!isViable()) {
+                    break;
+                }
+            }
+            for(int index = 0; index < workers; index++) {
+                out[index].writeByte(STOP);
+                out[index].flush();
+            }
+            for(int index = 0; index < workers; index++) {
+                if(!processes[index].waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                   || processes[index].exitValue() != 0) {
+                    throw new IOException("Worker " + index + " did not stop cleanly");
+                }
+            }
+        }
+        catch(IOException e) {
+            closeAll(sockets);
+            String reason = e.getMessage() != null ? e.getMessage() : "Lost the connection to a worker";
+            throw new IOException(reason + describeWorkers(processes, errors), e);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the workers", e);
+        }
+        finally {
+            closeAll(sockets);
+            for(Process process : processes) {
+                if(process != null) {
+                    process.destroy();
+                }
+            }
+        }
+
+        Map<Species, Integer> population = new EnumMap<>(Species.class);
+        for(int id = 0; id < liveCounts.length; id++) {
+            population.put(Species.byId(id), liveCounts[id]);
+        }
+        return new ReplicateResult(seed, clock.getStepCount(), population);
+    }
+
+    /**
+     * Wait for the next worker to connect, giving up if any worker dies first or none
+     * connects in time.
+     *
+     * @return The connection to the worker.
+     */
+    private static Socket acceptWorker(ServerSocket server, Process[] processes) throws IOException
+    {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+        while(true) {
+            try {
+                return server.accept();
+            }
+            catch(SocketTimeoutException e) {
+                for(int index = 0; index < processes.length; index++) {
+                    if(!processes[index].isAlive()) {
+                        throw new IOException("Worker " + index + " ended before connecting");
+                    }
+                }
+                if(System.currentTimeMillis() > deadline) {
+                    throw new IOException("The workers did not all connect in time", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Close the connections to the workers which have been made.
+     */
+    private static void closeAll(Socket[] sockets) throws IOException
+    {
+        for(Socket socket : sockets) {
+            if(socket != null) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Stop every worker still running, and describe how each one ended: its exit code, or
+     * that it was stopped, and the last of what it wrote to its error stream. Workers
+     * which do not stop in time, or at all if the wait is interrupted, are killed.
+     *
+     * @return The description, one line per worker after a line break.
+     */
+    private static String describeWorkers(Process[] processes, ErrorTail[] errors)
+    {
+        boolean[] stopped = new boolean[processes.length];
+        for(int index = 0; index < processes.length; index++) {
+            if(processes[index] != null && processes[index].isAlive()) {
+                processes[index].destroy();
+                stopped[index] = true;
+            }
+        }
+        StringBuilder description = new StringBuilder();
+        try {
+            for(int index = 0; index < processes.length; index++) {
+                if(processes[index] == null) {
+                    continue;
+                }
+                description.append(System.lineSeparator()).append("Worker ").append(index);
+                if(!processes[index].waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    processes[index].destroyForcibly();
+                    description.append(" was killed");
+                }
+                else if(stopped[index]) {
+                    description.append(" was stopped");
+                }
+                else {
+                    description.append(" exited with code ").append(processes[index].exitValue());
+                }
+                errors[index].join(TimeUnit.SECONDS.toMillis(EXIT_TIMEOUT_SECONDS));
+                String tail = errors[index].getTail();
+                if(!tail.isEmpty()) {
+                    description.append(": ").append(tail);
+                }
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for(Process process : processes) {
+                if(process != null) {
+                    process.destroyForcibly();
+                }
+            }
+            description.append(System.lineSeparator()).append("Interrupted while waiting for the workers");
+        }
+        return description.toString();
+    }
+
+    /**
+     * Advance the clock and weather, tell every worker to take the step, and add up
+     * their populations once they have all finished.
+     */
+    private void simulateOneStep(DataInputStream[] in, DataOutputStream[] out) throws IOException
+    {
+        randomizer.use();
+        clock.tick();
+        randomizer.setStep(clock.getStepCount());
+        Randomizer.setSubject(Randomizer.WORLD);
+        if((clock.getStepCount() % Simulator.WEATHER_UPDATE_INTERVAL_STEPS) == 0) {
+            weather.updateWeather();
+        }
+
+        for(int index = 0; index < workers; index++) {
+            out[index].writeByte(STEP);
+            out[index].writeInt(clock.getStepCount());
+            out[index].writeByte(clock.getCurrentTime().ordinal());
+            out[index].writeByte(weather.getWeather().ordinal());
+            out[index].flush();
+        }
+
+        Arrays.fill(liveCounts, 0);
+        for(int index = 0; index < workers; index++) {
+            for(int id = 0; id < liveCounts.length; id++) {
+                liveCounts[id] += in[index].readInt();
+            }
+        }
+    }
+
+    /**
+     * @return The first row of a worker's band (or the depth, for the index after the last worker).
+     */
+    private int firstRowOf(int index)
+    {
+        return (int) ((long) depth * index / workers);
+    }
+
+    /**
+     * Print the population of the whole ocean, as Field.fieldStats does for a single field.
+     */
+    public void reportStats()
+    {
+        System.out.println(FieldStats.describe(this::getLiveCount));
+    }
+
+    /**
+     * Return the number of living organisms of a species in the whole ocean.
+     *
+     * @param species The species to count.
+     * @return How many of that species were alive after the last step.
+     */
+    public int getLiveCount(Species species)
+    {
+        return liveCounts[species.getId()];
+    }
+
+    /**
+     * Return the number of living organisms with a trophic role in the whole ocean.
+     *
+     * @param role The role to count.
+     * @return How many organisms with that role were alive after the last step.
+     */
+    public int getLiveCount(TrophicRole role)
+    {
+        int count = 0;
+        for(int id = 0; id < liveCounts.length; id++) {
+            if(Species.byId(id).getRole() == role) {
+                count += liveCounts[id];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if there is at least one living predator and one living prey in the ocean.
+     */
+    public boolean isViable()
+    {
+        return getLiveCount(TrophicRole.PREDATOR) > 0 && getLiveCount(TrophicRole.PREY) > 0;
+    }
+
+    /**
+     * Copies what a worker writes to its error stream to this process's error stream, and
+     * keeps the last lines of it to report if the worker fails.
+     */
+    private static class ErrorTail extends Thread
+    {
+        // The most characters of a worker's errors kept for the report
+        private static final int MAX_TAIL = 4000;
+
+        private final BufferedReader reader;
+        private final StringBuilder tail = new StringBuilder();
+
+        /**
+         * Start copying a worker's error stream.
+         */
+        ErrorTail(InputStream errorStream, int index)
+        {
+            super("Shard worker " + index + " errors");
+            setDaemon(true);
+            reader = new BufferedReader(new InputStreamReader(errorStream));
+            start();
+        }
+
+        /**
+         * Copy lines until the worker closes its error stream.
+         */
+        @Override
+        public void run()
+        {
+            try {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    System.err.println(line);
+                    synchronized(tail) {
+                        tail.append(System.lineSeparator()).append(line);
+                        if(tail.length() > MAX_TAIL) {
+                            tail.delete(0, tail.length() - MAX_TAIL);
+                        }
+                    }
+                }
+            }
+            catch(IOException e) {
+                // The worker has gone; whatever it wrote before is kept
+            }
+        }
+
+        /**
+         * @return The last lines the worker wrote to its error stream.
+         */
+        String getTail()
+        {
+            synchronized(tail) {
+                return tail.toString().trim();
+            }
+        }
+    }
+}
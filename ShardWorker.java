@@ -0,0 +1,581 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ShardWorker simulates one horizontal band of an ocean too large for a single process.
+ * It is started by a ShardCoordinator, which tells it which rows it owns and then when to
+ * take each step, and with what time of day and weather.
+ *
+ * The worker's field holds its own rows plus a halo: one row above and one below (except
+ * at the top and bottom of the ocean) holding copies of its neighbours' edge rows. At the
+ * start of every step each worker sends its edge rows to its neighbours, which put copies
+ * of the organisms in them into their halos. Those copies do not act, but the worker's own
+ * organisms see them as they would in a single ocean: they count as partners and as taken
+ * cells, and they can be eaten and infected.
+ *
+ * Once its organisms have acted, and before the claims on the next field are settled, a
+ * worker sends each neighbour:
+ * <ul>
+ * <li>the cells of copies which were eaten, whose originals the neighbour kills;</li>
+ * <li>the cells of copies which were infected, whose originals the neighbour infects;</li>
+ * <li>the claims made on the halo (by movers, newborns and seedlings crossing the border),
+ *     each with a copy of its claimant, which the neighbour settles along with the claims
+ *     its own organisms made on its edge row, by the same priorities and keys.</li>
+ * </ul>
+ * A mover waiting to hear whether it may cross keeps its own cell. Once both sides have
+ * settled their claims, each tells the other which of its claimants won a cell, and the
+ * movers which did live on across the border only; those which lost stay where they were.
+ * The cell a mover leaves that way stays empty until the next step. The worker then
+ * reports its population to the coordinator.
+ *
+ * Neighbouring workers talk to each other directly over loopback sockets; the coordinator
+ * only hands out the work and gathers the statistics.
+ *
+ * Random numbers are drawn for the cell's position in the whole ocean, so a band starts
+ * with exactly the organisms the same rows would have in a single Simulator. Organisms at
+ * the borders see their neighbours' state from the start of the step, so a sharded run is
+ * not identical to a single one, but every run with the same seed and number of workers
+ * gives the same result.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class ShardWorker
+{
+    // The TimeOfDay, WeatherType and Sex values, indexed by the ordinals sent over the wire
+    // (species are sent as their ids)
+    private static final TimeOfDay[] TIMES = TimeOfDay.values();
+    private static final WeatherType[] WEATHERS = WeatherType.values();
+    private static final Sex[] SEXES = Sex.values();
+
+    // The connection to the coordinator
+    private final DataInputStream coordinatorIn;
+    private final DataOutputStream coordinatorOut;
+    // The neighbouring bands, above then below (only those which exist)
+    private final List<Neighbour> neighbours = new ArrayList<>();
+    // Sends messages to the neighbours while the worker reads theirs
+    private final ExecutorService sender;
+
+    // The width of the ocean, and the local rows of the worker's own band
+    private final int width, ownFirstRow, ownLastRow;
+    // The current state of the band, and the field the next state is built into
+    private Field field;
+    private Field nextFieldState;
+    // Per-animal state, random numbers and the stepper of this band
+    private final AnimalStateStore animalStates = new AnimalStateStore();
+    private final PlantStateStore plantStates = new PlantStateStore();
+    private final OrganismPool organismPool = new OrganismPool();
+    private final Randomizer randomizer;
+    private final ParallelStepper stepper;
+
+    /**
+     * Start a worker: connect to the coordinator, receive the band to simulate,
+     * connect to the neighbouring workers and populate the band.
+     *
+     * @param coordinatorPort The loopback port the coordinator is listening on.
+     * @param workerIndex The position of this worker's band, counting from the top.
+     */
+    public ShardWorker(int coordinatorPort, int workerIndex) throws IOException
+    {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try(ServerSocket peerServer = new ServerSocket(0, 1, loopback)) {
+            Socket coordinator = new Socket(loopback, coordinatorPort);
+            coordinator.setTcpNoDelay(true);
+            coordinatorIn = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+            coordinatorOut = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+            coordinatorOut.writeInt(workerIndex);
+            coordinatorOut.writeInt(peerServer.getLocalPort());
+            coordinatorOut.flush();
+
+            if(coordinatorIn.readByte() != ShardCoordinator.CONFIGURE) {
+                throw new IOException("Expected the band to simulate");
+            }
+            int depth = coordinatorIn.readInt();
+            width = coordinatorIn.readInt();
+            int firstRow = coordinatorIn.readInt();
+            int lastRow = coordinatorIn.readInt();
+            long seed = coordinatorIn.readLong();
+            int threads = coordinatorIn.readInt();
+            animalStates.setBulkUpdate(coordinatorIn.readBoolean());
+            double density = coordinatorIn.readDouble();
+            int upperPort = coordinatorIn.readInt();
+
+            // A halo row is kept on each side which has a neighbour
+            int haloAbove = firstRow > 0 ? 1 : 0;
+            int haloBelow = lastRow < depth ? 1 : 0;
+            int localDepth = haloAbove + (lastRow - firstRow) + haloBelow;
+            ownFirstRow = haloAbove;
+            ownLastRow = haloAbove + lastRow - firstRow;
+
+            // The upper neighbour is already listening; the lower one connects to us
+            if(upperPort >= 0) {
+                neighbours.add(new Neighbour(new Socket(loopback, upperPort), 0, ownFirstRow));
+            }
+            if(haloBelow > 0) {
+                neighbours.add(new Neighbour(peerServer.accept(), localDepth - 1, ownLastRow - 1));
+            }
+
+            field = new Field(localDepth, width);
+            nextFieldState = new Field(field.getLayout());
+            int subjectOffset = (firstRow - haloAbove) * width;
+            stepper = new ParallelStepper(field.getLayout(), threads, ownFirstRow, ownLastRow, subjectOffset);
+            sender = Executors.newFixedThreadPool(Math.max(1, neighbours.size()), runnable -> {
+                Thread thread = new Thread(runnable, "Shard sender");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            randomizer = new Randomizer(seed);
+            useContext();
+            Randomizer.setSubject(Randomizer.WORLD);
+            Simulator.populate(field, ownFirstRow, ownLastRow, subjectOffset, density);
+        }
+    }
+
+    /**
+     * Run a worker process.
+     *
+     * @param args The coordinator's port and the worker's index.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        ShardWorker worker = new ShardWorker(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        worker.run();
+    }
+
+    /**
+     * Take steps as the coordinator asks for them, until it says to stop.
+     */
+    public void run() throws IOException
+    {
+        while(coordinatorIn.readByte() == ShardCoordinator.STEP) {
+            int step = coordinatorIn.readInt();
+            TimeOfDay currentTime = TIMES[coordinatorIn.readByte()];
+            WeatherType weather = WEATHERS[coordinatorIn.readByte()];
+            simulateOneStep(step, currentTime, weather);
+            reportStats();
+        }
+        sender.shutdownNow();
+        field.close();
+        nextFieldState.close();
+    }
+
+    /**
+     * Simulate one step of the band, in the same order as Simulator.simulateOneStep,
+     * exchanging edge rows with the neighbours before the organisms act, the claims made
+     * across the borders before they are settled, and which of them won afterwards.
+     */
+    private void simulateOneStep(int step, TimeOfDay currentTime, WeatherType weather) throws IOException
+    {
+        useContext();
+        randomizer.setStep(step);
+        Randomizer.setSubject(Randomizer.WORLD);
+        animalStates.beginStep();
+        plantStates.beginStep(field.getWeather());
+        if(animalStates.isBulkUpdate()) {
+            animalStates.advanceAll(field.getWeather());
+        }
+
+        nextFieldState.clear();
+        nextFieldState.setWeather(weather);
+
+        exchangeHalos();
+        stepper.act(field, nextFieldState, currentTime);
+        exchangeClaims();
+        nextFieldState.commitClaims();
+        exchangeVerdicts();
+
+        Field previousFieldState = field;
+        field = nextFieldState;
+        nextFieldState = previousFieldState;
+        animalStates.endStep();
+        plantStates.endStep();
+        organismPool.endStep();
+    }
+
+    /**
+     * Send each neighbour a copy of the edge row next to it, and put the copies of
+     * the neighbours' edge rows into the halo rows of the current field.
+     */
+    private void exchangeHalos() throws IOException
+    {
+        List<Future<?>> sent = new ArrayList<>();
+        for(Neighbour neighbour : neighbours) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream message = new DataOutputStream(bytes);
+            writeRow(message, field, neighbour.edgeRow);
+            sent.add(send(neighbour, bytes));
+        }
+        for(Neighbour neighbour : neighbours) {
+            neighbour.ghosts.clear();
+            int count = neighbour.in.readInt();
+            for(int n = 0; n < count; n++) {
+                int index = neighbour.haloRow * width + neighbour.in.readInt();
+                Organism ghost = readOrganism(neighbour.in, field.getLocation(index));
+                field.place(ghost, index);
+                neighbour.ghosts.add(ghost);
+                neighbour.ghostsInfected.add(isInfected(ghost));
+            }
+        }
+        awaitSent(sent);
+    }
+
+    /**
+     * Send each neighbour what happened to the copies of its organisms and the claims made
+     * on its edge row, and apply what the neighbours send back: their kills and infections
+     * to this band's organisms, and their claims to this band's next field.
+     */
+    private void exchangeClaims() throws IOException
+    {
+        List<Future<?>> sent = new ArrayList<>();
+        for(Neighbour neighbour : neighbours) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream message = new DataOutputStream(bytes);
+            writeGhostEvents(message, neighbour);
+            writeClaims(message, neighbour);
+            sent.add(send(neighbour, bytes));
+        }
+        for(Neighbour neighbour : neighbours) {
+            int rowStart = neighbour.edgeRow * width;
+            // Originals of copies the neighbour's organisms ate
+            int kills = neighbour.in.readInt();
+            for(int n = 0; n < kills; n++) {
+                Organism victim = field.getOrganismAt(rowStart + neighbour.in.readInt());
+                if(victim != null && victim.isAlive()) {
+                    victim.setDead();
+                }
+            }
+            // Originals of copies the neighbour's organisms infected
+            int infections = neighbour.in.readInt();
+            for(int n = 0; n < infections; n++) {
+                Organism patient = field.getOrganismAt(rowStart + neighbour.in.readInt());
+                if(patient instanceof Animal animal && animal.isAlive()) {
+                    animal.infect();
+                }
+            }
+            readClaims(neighbour);
+        }
+        awaitSent(sent);
+        for(Neighbour neighbour : neighbours) {
+            discardGhosts(neighbour);
+        }
+    }
+
+    /**
+     * Take the claims made on the halo next to a neighbour out of the next field, and write
+     * them: their number, then each claim's column, key, origin column and claimant. A mover
+     * keeps its own cell until the neighbour's verdict comes back; newborns and seedlings
+     * live on only in the neighbour's band, so they are discarded here.
+     */
+    private void writeClaims(DataOutputStream message, Neighbour neighbour) throws IOException
+    {
+        int haloStart = neighbour.haloRow * width;
+        int edgeStart = neighbour.edgeRow * width;
+        List<Claim> claims = nextFieldState.takeClaims(haloStart, haloStart + width);
+        neighbour.movers.clear();
+        message.writeInt(claims.size());
+        for(Claim claim : claims) {
+            message.writeInt(claim.target() - haloStart);
+            message.writeLong(claim.key() & ~0xFFFFFFFFL);
+            message.writeInt(claim.origin() - edgeStart);
+            writeOrganism(message, claim.claimant());
+            if(claim.priority() == Field.CLAIM_MOVE) {
+                nextFieldState.claimStay(claim.claimant(), claim.origin());
+                neighbour.movers.add(claim.claimant());
+            }
+            else {
+                claim.claimant().setDead();
+                neighbour.movers.add(null);
+            }
+        }
+    }
+
+    /**
+     * Read the claims a neighbour made on this band's edge row, and make them in the next
+     * field with copies of their claimants. A mover whose copy in the halo was eaten this
+     * step has died, so its claim is dropped; one whose copy was infected is infected too.
+     */
+    private void readClaims(Neighbour neighbour) throws IOException
+    {
+        int edgeStart = neighbour.edgeRow * width;
+        int haloStart = neighbour.haloRow * width;
+        neighbour.immigrants.clear();
+        int claims = neighbour.in.readInt();
+        for(int n = 0; n < claims; n++) {
+            int index = edgeStart + neighbour.in.readInt();
+            long key = neighbour.in.readLong();
+            int origin = haloStart + neighbour.in.readInt();
+            Organism immigrant = readOrganism(neighbour.in, field.getLocation(index));
+            if((int) (key >>> 56) == Field.CLAIM_MOVE) {
+                Organism ghost = field.getOrganismAt(origin);
+                if(ghost == null || !ghost.isAlive()) {
+                    immigrant.setDead();
+                }
+                else if(isInfected(ghost) && immigrant instanceof Animal animal && !animal.isInfected()) {
+                    animal.infect();
+                }
+            }
+            if(immigrant.isAlive()) {
+                nextFieldState.claimWithKey(immigrant, index, -1, key | origin);
+            }
+            neighbour.immigrants.add(immigrant);
+        }
+    }
+
+    /**
+     * Tell each neighbour which of its claims won a cell, once the claims have been settled,
+     * and let the movers the neighbour took in live on there only.
+     */
+    private void exchangeVerdicts() throws IOException
+    {
+        List<Future<?>> sent = new ArrayList<>();
+        for(Neighbour neighbour : neighbours) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream message = new DataOutputStream(bytes);
+            for(Organism immigrant : neighbour.immigrants) {
+                message.writeBoolean(immigrant.isAlive());
+            }
+            neighbour.immigrants.clear();
+            sent.add(send(neighbour, bytes));
+        }
+        for(Neighbour neighbour : neighbours) {
+            for(Organism mover : neighbour.movers) {
+                boolean crossed = neighbour.in.readBoolean();
+                if(crossed && mover != null && mover.isAlive()) {
+                    mover.setDead();
+                }
+            }
+            neighbour.movers.clear();
+        }
+        awaitSent(sent);
+    }
+
+    /**
+     * Write the cells of the copies of a neighbour's organisms which were eaten and which
+     * were infected this step.
+     */
+    private void writeGhostEvents(DataOutputStream message, Neighbour neighbour) throws IOException
+    {
+        List<Organism> ghosts = neighbour.ghosts;
+        int haloStart = neighbour.haloRow * width;
+        int kills = 0;
+        int infections = 0;
+        for(int n = 0; n < ghosts.size(); n++) {
+            if(!ghosts.get(n).isAlive()) {
+                kills++;
+            }
+            else if(isInfected(ghosts.get(n)) && !neighbour.ghostsInfected.get(n)) {
+                infections++;
+            }
+        }
+        // Dead copies have lost their location, but still know their cell in the field
+        message.writeInt(kills);
+        for(Organism ghost : ghosts) {
+            if(!ghost.isAlive()) {
+                message.writeInt(ghost.getFieldCell(field) - haloStart);
+            }
+        }
+        message.writeInt(infections);
+        for(int n = 0; n < ghosts.size(); n++) {
+            Organism ghost = ghosts.get(n);
+            if(ghost.isAlive() && isInfected(ghost) && !neighbour.ghostsInfected.get(n)) {
+                message.writeInt(ghost.getFieldCell(field) - haloStart);
+            }
+        }
+    }
+
+    /**
+     * Discard the copies of a neighbour's organisms, once the claims of their originals
+     * have been read.
+     */
+    private void discardGhosts(Neighbour neighbour)
+    {
+        for(Organism ghost : neighbour.ghosts) {
+            if(ghost.isAlive()) {
+                ghost.setDead();
+            }
+        }
+        neighbour.ghosts.clear();
+        neighbour.ghostsInfected.clear();
+    }
+
+    /**
+     * Write the living organisms of one row of a field: their number, then each
+     * organism's column and state.
+     */
+    private void writeRow(DataOutputStream message, Field rowField, int row) throws IOException
+    {
+        int rowStart = row * width;
+        int count = 0;
+        for(int col = 0; col < width; col++) {
+            Organism anOrganism = rowField.getOrganismAt(rowStart + col);
+            if(anOrganism != null && anOrganism.isAlive()) {
+                count++;
+            }
+        }
+        message.writeInt(count);
+        for(int col = 0; col < width; col++) {
+            Organism anOrganism = rowField.getOrganismAt(rowStart + col);
+            if(anOrganism != null && anOrganism.isAlive()) {
+                message.writeInt(col);
+                writeOrganism(message, anOrganism);
+            }
+        }
+    }
+
+    /**
+     * Write an organism's species and everything needed to carry on its life elsewhere.
+     */
+    private void writeOrganism(DataOutputStream message, Organism anOrganism) throws IOException
+    {
+        message.writeByte(anOrganism.getSpeciesId());
+        if(anOrganism instanceof Animal animal) {
+            int id = animal.getStateId();
+            message.writeInt(animalStates.getAge(id));
+            message.writeInt(animalStates.getHungerLevel(id));
+            message.writeInt(animalStates.getPregnancyCounter(id));
+            message.writeInt(animalStates.getNumBirths(id));
+            message.writeInt(animalStates.getInfectionDays(id));
+            message.writeBoolean(animalStates.isPregnant(id));
+            message.writeBoolean(animalStates.isInfected(id));
+            message.writeByte(animalStates.getSex(id).ordinal());
+        }
+        else if(anOrganism instanceof Plant plant) {
+            message.writeInt(plant.getAge());
+        }
+    }
+
+    /**
+     * Read an organism written by writeOrganism, and make it again at a location of this band.
+     */
+    private Organism readOrganism(DataInputStream message, Location location) throws IOException
+    {
+        Species species = Species.byId(message.readByte());
+        Organism anOrganism = organismPool.reuse(species, location);
+        if(anOrganism == null) {
+            anOrganism = species.create(location);
+        }
+        if(anOrganism instanceof Animal animal) {
+            int id = animal.getStateId();
+            animalStates.setAge(id, message.readInt());
+            animalStates.setHungerLevel(id, message.readInt());
+            animalStates.setPregnancyCounter(id, message.readInt());
+            animalStates.setNumBirths(id, message.readInt());
+            animalStates.setInfectionDays(id, message.readInt());
+            animalStates.setPregnant(id, message.readBoolean());
+            animalStates.setInfected(id, message.readBoolean());
+            animalStates.setSex(id, SEXES[message.readByte()]);
+        }
+        else if(anOrganism instanceof Plant plant) {
+            plant.setAge(message.readInt());
+        }
+        return anOrganism;
+    }
+
+    /**
+     * @return Whether an organism is an infected animal.
+     */
+    private static boolean isInfected(Organism anOrganism)
+    {
+        return anOrganism instanceof Animal animal && animal.isInfected();
+    }
+
+    /**
+     * Send the population of the band to the coordinator: the number alive of each
+     * species, in order of species id.
+     */
+    private void reportStats() throws IOException
+    {
+        for(int id = 0; id < Species.count(); id++) {
+            coordinatorOut.writeInt(field.getLiveCount(Species.byId(id)));
+        }
+        coordinatorOut.flush();
+    }
+
+    /**
+     * Send a message to a neighbour on the sender thread, so that two neighbours
+     * sending each other large messages cannot both block.
+     */
+    private Future<?> send(Neighbour neighbour, ByteArrayOutputStream bytes)
+    {
+        return sender.submit(() -> {
+            bytes.writeTo(neighbour.out);
+            neighbour.out.flush();
+            return null;
+        });
+    }
+
+    /**
+     * Wait until messages have been sent.
+     */
+    private static void awaitSent(List<Future<?>> sent) throws IOException
+    {
+        try {
+            for(Future<?> message : sent) {
+                message.get();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sending to a neighbour", e);
+        }
+        catch(ExecutionException e) {
+            throw new IOException("Could not send to a neighbour", e.getCause());
+        }
+    }
+
+    /**
+     * Make the current thread draw this band's random numbers, register new
+     * animals and plants in this band's stores and reuse this band's dead organisms.
+     */
+    private void useContext()
+    {
+        randomizer.use();
+        animalStates.use();
+        plantStates.use();
+        organismPool.use();
+    }
+
+    /**
+     * The connection to a neighbouring band, and the rows of this band which face it.
+     */
+    private static class Neighbour
+    {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        // The local row holding copies of the neighbour's edge row, and this band's row next to it
+        private final int haloRow, edgeRow;
+        // The copies placed in the halo this step, and whether each was infected when it arrived
+        private final List<Organism> ghosts = new ArrayList<>();
+        private final List<Boolean> ghostsInfected = new ArrayList<>();
+        // This band's claimants of the claims sent to the neighbour this step (the movers,
+        // or null for newborns and seedlings), and the copies of the neighbour's claimants
+        private final List<Organism> movers = new ArrayList<>();
+        private final List<Organism> immigrants = new ArrayList<>();
+
+        /**
+         * Wrap a connection to a neighbour.
+         */
+        Neighbour(Socket socket, int haloRow, int edgeRow) throws IOException
+        {
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.haloRow = haloRow;
+            this.edgeRow = edgeRow;
+        }
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.*;
+import javax.swing.SwingUtilities;
 
 /**
  * The Simulator class manages the whole simulation of organisms.
@@ -30,17 +31,40 @@ public class Simulator
     // The probability that marine algae will be created in any given position.
     private static final double MARINEALGAE_CREATION_PROBABILITY = 0.90;
     // Number of steps before the weather changes
-    private static final int WEATHER_UPDATE_INTERVAL_STEPS = 8;
+    public static final int WEATHER_UPDATE_INTERVAL_STEPS = 8;
+    // The seeding density at which every cell is drawn for (see populate)
+    public static final double FULL_DENSITY = 1.0;
+    // Whether animal hunger is counted down in one pass over the animal state store at
+    // the start of each step, rather than by each animal as it acts, unless a simulation
+    // is told otherwise (see setBulkUpdate).
+    private static final boolean BULK_UPDATE_ANIMALS = false;
+    // Fields with at least this many cells are updated on every available core; smaller
+    // ones on a single thread. Either way the result is the same (see ParallelStepper).
+    private static final int PARALLEL_MIN_CELLS = 1000 * 1000;
 
 
     // The clock controlling time progression and step count during simluation
     private Clock clock = new Clock();
     // The current state of the field.
     private Field field;
-    // A graphical view of the simulation.
+    // The field the next state is built into; swapped with field after each step.
+    private Field nextFieldState;
+    // A graphical view of the simulation (null when running without one).
     private final SimulatorView view;
     // Weather System used to manage current weather condition
     private Weather weather;
+    // Per-animal state of every animal in this simulation
+    private final AnimalStateStore animalStates = new AnimalStateStore();
+    // Age of every plant in this simulation
+    private final PlantStateStore plantStates = new PlantStateStore();
+    // Dead organisms kept for newborns and seedlings to reuse
+    private final OrganismPool organismPool = new OrganismPool();
+    // The random numbers of this simulation
+    private final Randomizer randomizer;
+    // Makes the organisms act, tile by tile
+    private final ParallelStepper stepper;
+    // The share of cells filled when the field is populated (see populate)
+    private final double density;
 
     /**
      * Construct a simulation field with default size.
@@ -58,6 +82,53 @@ public class Simulator
      */
     public Simulator(int depth, int width)
     {
+        this(depth, width, new Randomizer(), true, FULL_DENSITY);
+    }
+    
+    /**
+     * Create a simulation field with the given size and seed, with or without a view.
+     * Simulations without a view print nothing, so many can run side by side.
+     * 
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed of the simulation's random numbers.
+     * @param showView Whether to open a window showing the simulation.
+     */
+    public Simulator(int depth, int width, long seed, boolean showView)
+    {
+        this(depth, width, new Randomizer(seed), showView, FULL_DENSITY);
+    }
+    
+    /**
+     * Create a simulation field with the given size and seed, with or without a view,
+     * which starts with only a share of its cells filled. Sparse seeding lets an ocean
+     * of hundreds of millions of cells be populated in reasonable time.
+     * 
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param seed The seed of the simulation's random numbers.
+     * @param showView Whether to open a window showing the simulation.
+     * @param density The chance of each cell being filled at the start, or FULL_DENSITY
+     *                to draw for every cell (see populate).
+     */
+    public Simulator(int depth, int width, long seed, boolean showView, double density)
+    {
+        this(depth, width, new Randomizer(seed), showView, density);
+    }
+    
+    /**
+     * Create a simulation field with the given size and random numbers.
+     * 
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param randomizer The random numbers the simulation draws from.
+     * @param showView Whether to open a window showing the simulation.
+     * @param density The share of cells filled when the field is populated.
+     */
+    private Simulator(int depth, int width, Randomizer randomizer, boolean showView, double density)
+    {
+        this.randomizer = randomizer;
+        this.density = density;
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be >= zero.");
             System.out.println("Using default values.");
@@ -66,10 +137,17 @@ public class Simulator
         }
         
         field = new Field(depth, width);
-        view = new SimulatorView(depth, width);
+        nextFieldState = new Field(field.getLayout());
+        view = showView ? new SimulatorView(depth, width) : null;
 
         weather = new Weather();
         field.setWeather(weather.getWeather());
+        animalStates.setBulkUpdate(BULK_UPDATE_ANIMALS);
+        int threads = 1;
+        if(field.getSize() >= PARALLEL_MIN_CELLS) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        stepper = new ParallelStepper(field.getLayout(), threads);
         
         reset();
     }
@@ -91,10 +169,14 @@ public class Simulator
      */
     public void simulate(int numSteps)
     {
-        reportStats();
+        if (view != null) {
+            reportStats();
+        }
         for(int n = 1; n <= numSteps && field.isViable(); n++) {
             simulateOneStep(); 
-            delay(50);         // adjust this to change execution speed
+            if (view != null) {
+                delay(50);         // adjust this to change execution speed
+            }
         }
     }
     
@@ -103,10 +185,15 @@ public class Simulator
      * Each organism acts based on the current field and writes its 
      * updated state into a separate nextFieldState. The next state
      * replaces the current states once all the organisms have "acted".
+     * The two fields are reused step after step: the outgoing state is
+     * cleared in place and becomes the buffer for the following step.
      */
     public void simulateOneStep()
     {
+        useContext();
         clock.tick();
+        randomizer.setStep(clock.getStepCount());
+        Randomizer.setSubject(Randomizer.WORLD);
         
         // Update weather every 8 steps
         if ((clock.getStepCount() % WEATHER_UPDATE_INTERVAL_STEPS) == 0) {
@@ -114,22 +201,42 @@ public class Simulator
         }
         
 
-        // Create the next field state
-        Field nextFieldState = new Field(field.getDepth(), field.getWidth());
+        // Empty the spare buffer so the next field state can be built into it
+        nextFieldState.clear();
 
         // sets Weather for a field
         nextFieldState.setWeather(weather.getWeather());
         
-        List<Organism> organisms = new ArrayList<>(field.getOrganisms());
-        for (Organism anOrganism : organisms) {
-            anOrganism.act(field, nextFieldState, clock.getCurrentTime());
+        // Find the animals whose deaths of old age or disease fall due this step; they die as they act
+        animalStates.beginStep();
+        // and the plants which reach their maximum age in this step's weather
+        plantStates.beginStep(field.getWeather());
+        
+        // Starve every animal in one pass; the animals then skip this in act,
+        // and those the pass found starving die as they act
+        if (animalStates.isBulkUpdate()) {
+            animalStates.advanceAll(field.getWeather());
         }
         
-        // Replace the old state with the newly built state
+        // Organisms only ever claim cells in nextFieldState, so the
+        // current field does not change while they act.
+        stepper.act(field, nextFieldState, clock.getCurrentTime());
+        // Settle who gets each claimed cell, now that every organism has made its claims
+        nextFieldState.commitClaims();
+        
+        // Swap the buffers: the newly built state becomes the current one
+        Field previousFieldState = field;
         field = nextFieldState;
+        nextFieldState = previousFieldState;
+        animalStates.endStep();
+        plantStates.endStep();
+        organismPool.endStep();
 
-        reportStats();
-        view.showStatus(clock.getStepCount(), clock.getFormattedTime(), field);
+        if (view != null) {
+            reportStats();
+            // The view draws the snapshot on its own thread while the next step is computed
+            view.showStatus(new FieldSnapshot(clock.getStepCount(), clock.getFormattedTime(), field));
+        }
     }
         
     /**
@@ -139,13 +246,84 @@ public class Simulator
      */
     public void reset()
     {
+        useContext();
         clock.reset();
+        randomizer.reset();
+        Randomizer.setSubject(Randomizer.WORLD);
         
         weather.reset();
         field.clear(); // removes all organisms from current field
+        animalStates.clear(); // forgets the state of those animals
+        plantStates.clear(); // and plants
+        organismPool.clear(); // and any dead organisms kept for reuse
         field.setWeather(weather.getWeather());         // sets current weather when reset which should be clear
         populate(); // fills field with organisms again.
-        view.showStatus(clock.getStepCount(), clock.getFormattedTime(), field);
+        if (view != null) {
+            view.showStatus(new FieldSnapshot(clock.getStepCount(), clock.getFormattedTime(), field));
+        }
+    }
+    
+    /**
+     * Release whatever the simulation's fields hold outside the heap, such as the files
+     * of an ocean too big for memory, and close the view. Call when the simulator is no
+     * longer needed; it cannot be used afterwards.
+     */
+    public void close()
+    {
+        field.close();
+        nextFieldState.close();
+        if (view != null) {
+            SwingUtilities.invokeLater(view::dispose);
+        }
+    }
+    
+    /**
+     * Make the current thread draw this simulation's random numbers, register new
+     * animals and plants in this simulation's stores and reuse this simulation's dead organisms. Done at the start of every step, since a
+     * simulation may be stepped from different threads over its life.
+     */
+    private void useContext()
+    {
+        randomizer.use();
+        animalStates.use();
+        plantStates.use();
+        organismPool.use();
+    }
+    
+    /**
+     * @return The current state of the field.
+     */
+    public Field getField()
+    {
+        return field;
+    }
+    
+    /**
+     * @return The number of steps simulated since the last reset.
+     */
+    public int getStepCount()
+    {
+        return clock.getStepCount();
+    }
+    
+    /**
+     * @return Whether animal hunger is counted down in one pass at the start of each step.
+     */
+    public boolean isBulkUpdate()
+    {
+        return animalStates.isBulkUpdate();
+    }
+    
+    /**
+     * Choose whether animal hunger is counted down in one pass over the animal state store
+     * at the start of each step, or by each animal as it acts. Animals die at the same
+     * point of the step either way. Takes effect from the next step.
+     * 
+     * @param bulkUpdate true to use the bulk pass.
+     */
+    public void setBulkUpdate(boolean bulkUpdate)
+    {
+        animalStates.setBulkUpdate(bulkUpdate);
     }
     
     /**
@@ -154,56 +332,95 @@ public class Simulator
      */
     private void populate()
     {
-        Random rand = Randomizer.getRandom();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                
-                
-                // For each organism, if the random number is less than the probability, an organism is spawned.
-                // This process is repeated for every position in the gri
-                if(rand.nextDouble() <= TIGERSHARK_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    TigerShark tigershark = new TigerShark(location);
-                    field.place(tigershark, location);
-                }
-                    
-                else if (rand.nextDouble() <= OCTOPUS_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Octopus octopus = new Octopus(location);
-                    field.place(octopus, location);
-                }
-                                
-                else if(rand.nextDouble() <= PARROTFISH_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Parrotfish parrotfish = new Parrotfish(location);
-                    field.place(parrotfish, location);
-                }
-                
-                else if (rand.nextDouble() <= KRILL_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Krill krill = new Krill(location);
-                    field.place(krill, location);
-                }
-                else if (rand.nextDouble() <= HERMITCRAB_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    HermitCrab crab = new HermitCrab(location);
-                    field.place(crab, location);
-                }
-                else if (rand.nextDouble() <= MARINEALGAE_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    MarineAlgae algae = new MarineAlgae(location);
-                    field.place(algae, location);
+        populate(field, 0, field.getDepth(), 0, density);
+    }
+    
+    /**
+     * Randomly populate a band of rows of a field, as populate does for the whole field.
+     * 
+     * With a density of FULL_DENSITY every cell is drawn for, and the creation
+     * probabilities decide what, if anything, is put in it. With a lower density only
+     * that share of the cells is filled, and each filled cell gets an organism chosen by
+     * the same probabilities. Each row then draws how many cells to skip to the next one
+     * it fills, so the time taken grows with the number of organisms rather than cells.
+     * 
+     * @param field The field to populate.
+     * @param firstRow The first row to populate.
+     * @param lastRow The row after the last one to populate.
+     * @param subjectOffset Added to a cell's index to give the subject its random numbers
+     *                      are drawn for, so a band of a larger ocean gets the organisms
+     *                      the same cells of the whole ocean would get.
+     * @param density The chance of a cell being filled, or FULL_DENSITY.
+     */
+    public static void populate(Field field, int firstRow, int lastRow, int subjectOffset, double density)
+    {
+        Random rand = Randomizer.getRandom(RandomPurpose.POPULATE);
+        int width = field.getWidth();
+        for(int row = firstRow; row < lastRow; row++) {
+            if(density >= FULL_DENSITY) {
+                for(int col = 0; col < width; col++) {
+                    // Each cell draws its own numbers, so the starting ocean does not depend
+                    // on the order the cells are filled in
+                    Randomizer.setSubject(row * width + col + subjectOffset);
+                    Location location = field.getLocation(row, col);
+                    Organism anOrganism = createOrganism(rand, location);
+                    if(anOrganism != null) {
+                        field.place(anOrganism, location);
+                    }
+                    // else leave the location empty.
                 }
-                else if (rand.nextDouble() <= KELP_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Kelp kelp = new Kelp(location);
-                    field.place(kelp, location);
+            }
+            else {
+                // Each row draws its own numbers, as the subject of its first cell
+                Randomizer.setSubject(row * width + subjectOffset);
+                for(long col = Randomizer.nextGeometric(rand, density) - 1; col < width;
+                    col += Randomizer.nextGeometric(rand, density)) {
+                    Location location = field.getLocation(row, (int) col);
+                    Organism anOrganism = createOrganism(rand, location);
+                    while(anOrganism == null) {
+                        anOrganism = createOrganism(rand, location);
+                    }
+                    field.place(anOrganism, location);
                 }
-                // else leave the location empty.
             }
         }
     }
     
+    /**
+     * Draw which organism, if any, starts off in a cell, and create it.
+     * 
+     * @param rand The random numbers to draw from.
+     * @param location The location of the cell.
+     * @return The new organism, or null if the cell is to be left empty.
+     */
+    private static Organism createOrganism(Random rand, Location location)
+    {
+        // For each organism, if the random number is less than the probability, an organism is spawned.
+        // This process is repeated for every position in the gri
+        if(rand.nextDouble() <= TIGERSHARK_CREATION_PROBABILITY) {
+            return new TigerShark(location);
+        }
+        else if (rand.nextDouble() <= OCTOPUS_CREATION_PROBABILITY) {
+            return new Octopus(location);
+        }
+        else if(rand.nextDouble() <= PARROTFISH_CREATION_PROBABILITY) {
+            return new Parrotfish(location);
+        }
+        else if (rand.nextDouble() <= KRILL_CREATION_PROBABILITY) {
+            return new Krill(location);
+        }
+        else if (rand.nextDouble() <= HERMITCRAB_CREATION_PROBABILITY) {
+            return new HermitCrab(location);
+        }
+        else if (rand.nextDouble() <= MARINEALGAE_CREATION_PROBABILITY) {
+            return new MarineAlgae(location);
+        }
+        else if (rand.nextDouble() <= KELP_CREATION_PROBABILITY) {
+            return new Kelp(location);
+        }
+        return null;
+    }
+    
 
     /**
      * Report statistics about the field population currently
@@ -1,7 +1,9 @@
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
 import javax.swing.*;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A graphical view of the simulation grid.
@@ -10,6 +12,12 @@ import java.util.Map;
  * Colors for each type of species can be defined using the
  * setColor method.
  * 
+ * The view draws snapshots of the field (see FieldSnapshot) on a
+ * thread of its own, so the simulation can compute the next step
+ * while the last one is being drawn. If the simulation publishes
+ * snapshots faster than they can be drawn, only the latest is shown.
+ * The thread stops when the view is disposed.
+ * 
  * @author David J. Barnes and Michael Kölling
  * @version 7.0
  */
@@ -33,10 +41,17 @@ public class SimulatorView extends JFrame
     private final JLabel weatherLabel;
     private final FieldView fieldView;
     
-    // A map for storing colors for participants in the simulation
-    private final Map<Class<?>, Color> colors;
+    // The color of each species, indexed by the cell values of a FieldSnapshot
+    // (species id plus one), starting from the colors in the species registry
+    private final Color[] colors;
     // A statistics object computing and storing simulation information
     private final FieldStats stats;
+    // The latest snapshot published and not yet drawn (null if there is none)
+    private final AtomicReference<FieldSnapshot> pending;
+    // The thread which draws the published snapshots
+    private final Thread renderer;
+    // Set once the view has been disposed, to stop the renderer
+    private volatile boolean disposed;
 
     /**
      * Create a view of the given width and height.
@@ -46,17 +61,12 @@ public class SimulatorView extends JFrame
     public SimulatorView(int height, int width)
     {
         stats = new FieldStats();
-        colors = new LinkedHashMap<>();
-        
-        setColor(TigerShark.class, Color.blue);
-        setColor(Octopus.class, Color.pink.darker());
-        
-        setColor(Parrotfish.class, Color.red);
-        setColor(Krill.class, Color.orange);
-        setColor(HermitCrab.class, Color.red.darker());
-        
-        setColor(Kelp.class, Color.green);
-        setColor(MarineAlgae.class, Color.green.darker());
+        colors = new Color[Species.count() + 1];
+        colors[FieldSnapshot.EMPTY] = EMPTY_COLOR;
+        for(int id = 0; id < Species.count(); id++) {
+            Species species = Species.byId(id);
+            setColor(species, species.getColor() != null ? species.getColor() : UNKNOWN_COLOR);
+        }
 
         setTitle("Ocean Simulation");
         stepLabel = new JLabel(STEP_PREFIX);
@@ -89,72 +99,99 @@ public class SimulatorView extends JFrame
         contents.add(population, BorderLayout.SOUTH);
         pack();
         setVisible(true);
+        
+        pending = new AtomicReference<>();
+        renderer = new Thread(this::render, "Simulation renderer");
+        renderer.setDaemon(true);
+        renderer.start();
     }
     
     /**
-     * Define a color to be used for a given class of animal.
-     * @param animalClass The animal's Class object.
-     * @param color The color to be used for the given class.
+     * Define a color to be used for a given species.
+     * @param species The species.
+     * @param color The color to be used for the given species.
      */
-    public void setColor(Class<?> organismClass, Color color)
+    public void setColor(Species species, Color color)
     {
-        colors.put(organismClass, color);
+        colors[species.getId() + 1] = color;
     }
 
     /**
-     * @return The color to be used for a given class of animal.
+     * Show the status of the field in a snapshot. The snapshot is drawn on
+     * the view's own thread, so this returns straight away.
+     * @param snapshot The snapshot to be displayed.
      */
-    private Color getColor(Class<?> organismClass)
+    public void showStatus(FieldSnapshot snapshot)
     {
-        Color col = colors.get(organismClass);
-        if(col == null) {
-            // no color defined for this class
-            return UNKNOWN_COLOR;
+        if(disposed) {
+            return;
         }
-        else {
-            return col;
+        pending.set(snapshot);
+        LockSupport.unpark(renderer);
+    }
+
+    /**
+     * Close the view and stop the thread drawing it.
+     */
+    @Override
+    public void dispose()
+    {
+        disposed = true;
+        pending.set(null);
+        renderer.interrupt();
+        super.dispose();
+    }
+
+    /**
+     * Draw each snapshot as it is published, until the view is disposed.
+     * Snapshots published while one is being drawn replace one another, so
+     * the next one drawn is always the latest.
+     */
+    private void render()
+    {
+        while(!disposed) {
+            FieldSnapshot snapshot = pending.getAndSet(null);
+            if(snapshot == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            BufferedImage image = fieldView.drawSnapshot(snapshot);
+            String details = POPULATION_PREFIX + stats.getPopulationDetails(snapshot);
+            try {
+                // Wait for the image to be shown, so the one it replaces is free to draw on
+                SwingUtilities.invokeAndWait(() -> showSnapshot(snapshot, image, details));
+            }
+            catch(InterruptedException e) {
+                return;
+            }
+            catch(InvocationTargetException e) {
+                throw new RuntimeException(e.getCause());
+            }
         }
     }
 
     /**
-     * Show the current status of the field.
-     * @param step Which iteration step it is.
-     * @param field The field whose status is to be displayed.
+     * Put a drawn snapshot on the screen. Called on the event dispatch thread.
      */
-    public void showStatus(int step, String formattedTime, Field field)
+    private void showSnapshot(FieldSnapshot snapshot, BufferedImage image, String details)
     {
+        // A view disposed of while the snapshot was being drawn stays closed
+        if(disposed) {
+            return;
+        }
         if(!isVisible()) {
             setVisible(true);
         }
         
+        int step = snapshot.getStep();
         int dayCount = step/4;
-        WeatherType currentWeather = field.getWeather();
         
         stepLabel.setText(STEP_PREFIX + step);
-        time.setText(TIME_PREFIX + formattedTime);
+        time.setText(TIME_PREFIX + snapshot.getFormattedTime());
         day.setText(DAY_PREFIX + dayCount);
-        weatherLabel.setText(WEATHER_PREFIX + currentWeather);
-        
-        stats.reset();
-        
-        fieldView.preparePaint();
-
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object organism = field.getOrganismAt(new Location(row, col));
-                if(organism != null) {
-                    stats.incrementCount(organism.getClass());
-                    fieldView.drawMark(col, row, getColor(organism.getClass()));
-                }
-                else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
-                }
-            }
-        }
-        stats.countFinished();
-
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
-        fieldView.repaint();
+        weatherLabel.setText(WEATHER_PREFIX + snapshot.getWeather());
+        population.setText(details);
+        fieldView.showImage(image);
     }
 
     /**
@@ -179,10 +216,12 @@ public class SimulatorView extends JFrame
         private final int GRID_VIEW_SCALING_FACTOR = 6;
 
         private final int gridWidth, gridHeight;
-        private int xScale, yScale;
-        Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        // The image on the screen, and the one the next snapshot is drawn on.
+        // The renderer only draws on an image the screen is not showing.
+        private BufferedImage shownImage, spareImage;
+        // The size to draw the next snapshot at, taken on the event dispatch thread
+        // each time an image is shown, since the renderer cannot ask the component
+        private Dimension drawSize;
 
         /**
          * Create a new FieldView component.
@@ -191,7 +230,7 @@ public class SimulatorView extends JFrame
         {
             gridHeight = height;
             gridWidth = width;
-            size = new Dimension(0, 0);
+            drawSize = getPreferredSize();
         }
 
         /**
@@ -204,34 +243,54 @@ public class SimulatorView extends JFrame
         }
 
         /**
-         * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
+         * Draw a snapshot on the spare image, at the component's size when the last
+         * image was shown. Since the component may be resized, compute the scaling factor again.
+         * @return The image drawn on.
          */
-        public void preparePaint()
+        public BufferedImage drawSnapshot(FieldSnapshot snapshot)
         {
-            if(! size.equals(getSize())) {  // if the size has changed...
-                size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
-
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
-                }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
+            Dimension size = drawSize;
+            if(size.width < 1 || size.height < 1) {
+                size = getPreferredSize();
+            }
+            BufferedImage image = spareImage;
+            if(image == null || image.getWidth() != size.width || image.getHeight() != size.height) {
+                image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+            }
+
+            int xScale = size.width / gridWidth;
+            if(xScale < 1) {
+                xScale = GRID_VIEW_SCALING_FACTOR;
+            }
+            int yScale = size.height / gridHeight;
+            if(yScale < 1) {
+                yScale = GRID_VIEW_SCALING_FACTOR;
+            }
+            
+            Graphics g = image.getGraphics();
+            g.setColor(EMPTY_COLOR);
+            g.fillRect(0, 0, size.width, size.height);
+            int index = 0;
+            for(int row = 0; row < gridHeight; row++) {
+                for(int col = 0; col < gridWidth; col++, index++) {
+                    g.setColor(colors[snapshot.getCellValue(index)]);
+                    g.fillRect(col * xScale, row * yScale, xScale-1, yScale-1);
                 }
             }
+            g.dispose();
+            return image;
         }
-        
+
         /**
-         * Paint on grid location on this field in a given color.
+         * Put a drawn image on the screen. The image it replaces is drawn on next,
+         * at the component's current size. Called on the event dispatch thread.
          */
-        public void drawMark(int x, int y, Color color)
+        public void showImage(BufferedImage image)
         {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+            spareImage = shownImage;
+            shownImage = image;
+            drawSize = getSize();
+            repaint();
         }
 
         /**
@@ -240,14 +299,14 @@ public class SimulatorView extends JFrame
          */
         public void paintComponent(Graphics g)
         {
-            if(fieldImage != null) {
+            if(shownImage != null) {
                 Dimension currentSize = getSize();
-                if(size.equals(currentSize)) {
-                    g.drawImage(fieldImage, 0, 0, null);
+                if(shownImage.getWidth() == currentSize.width && shownImage.getHeight() == currentSize.height) {
+                    g.drawImage(shownImage, 0, 0, null);
                 }
                 else {
                     // Rescale the previous image.
-                    g.drawImage(fieldImage, 0, 0, currentSize.width, currentSize.height, null);
+                    g.drawImage(shownImage, 0, 0, currentSize.width, currentSize.height, null);
                 }
             }
         }
@@ -0,0 +1,149 @@
+import java.awt.Color;
+import java.util.function.Function;
+
+/**
+ * The Species enum is the registry of every kind of organism in the simulation: its name,
+ * its place in the food chain, the colour it is shown in, how to make one and its constants
+ * (the SpeciesProfile built by the species' class).
+ * Each organism reports its species, which lets the field keep a running count of
+ * how many of each kind are alive instead of counting them again every step.
+ * 
+ * A species' ordinal is also its id: a small integer each organism keeps, which indexes
+ * the live counts, the view's colours and the diet table (see byId). The diet table is
+ * built once, and holds for every species a bitmask of the species it eats, so checking
+ * whether one organism can eat another is a single bit test however many species there are.
+ * 
+ * Adding a species means adding a constant here (and its diet); the statistics, the
+ * viability check and the view pick it up from the registry.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public enum Species
+{
+    // Species(name, role, colour, constructor, profile)
+    TIGER_SHARK("Tiger Shark", TrophicRole.PREDATOR, Color.blue, TigerShark::new, TigerShark.PROFILE),
+    OCTOPUS("Octopus", TrophicRole.PREDATOR, Color.pink.darker(), Octopus::new, Octopus.PROFILE),
+    PARROTFISH("Parrotfish", TrophicRole.PREY, Color.red, Parrotfish::new, Parrotfish.PROFILE),
+    KRILL("Krill", TrophicRole.PREY, Color.orange, Krill::new, Krill.PROFILE),
+    HERMIT_CRAB("Hermit Crab", TrophicRole.PREY, Color.red.darker(), HermitCrab::new, HermitCrab.PROFILE),
+    KELP("Kelp", TrophicRole.PLANT, Color.green, Kelp::new, Kelp.PROFILE),
+    MARINE_ALGAE("Marine Algae", TrophicRole.PLANT, Color.green.darker(), MarineAlgae::new, MarineAlgae.PROFILE);
+    
+    // Every species, indexed by id
+    private static final Species[] BY_ID = values();
+    // The species each species eats, indexed by the eater's id, with one bit per food's id
+    private static final int[] DIETS = new int[values().length];
+    
+    static {
+        diet(TIGER_SHARK, PARROTFISH, KRILL, KELP, MARINE_ALGAE);
+        diet(OCTOPUS, HERMIT_CRAB, KRILL);
+        diet(PARROTFISH, MARINE_ALGAE, KELP);
+        diet(KRILL, MARINE_ALGAE, KELP);
+        diet(HERMIT_CRAB, MARINE_ALGAE);
+    }
+    
+    private final String name;
+    private final TrophicRole role;
+    private final Color color;
+    private final Function<Location, Organism> constructor;
+    private final SpeciesProfile profile;
+    
+    /**
+     * Constructor for Species
+     */
+    Species(String name, TrophicRole role, Color color, Function<Location, Organism> constructor,
+            SpeciesProfile profile)
+    {
+        this.name = name;
+        this.role = role;
+        this.color = color;
+        this.constructor = constructor;
+        this.profile = profile;
+    }
+    
+    /**
+     * @param id - a species id, as returned by Organism.getSpeciesId
+     * @return - the species with that id
+     */
+    public static Species byId(int id)
+    {
+        return BY_ID[id];
+    }
+    
+    /**
+     * @return - the id of this species, a small integer from 0 up to count() - 1
+     */
+    public int getId()
+    {
+        return ordinal();
+    }
+    
+    /**
+     * @return - the number of species, one more than the highest id
+     */
+    public static int count()
+    {
+        return BY_ID.length;
+    }
+    
+    /**
+     * @return - the name of the species, as shown to the user
+     */
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * @return - whether this species is a predator, prey or a plant
+     */
+    public TrophicRole getRole()
+    {
+        return role;
+    }
+    
+    /**
+     * @return - the colour the species is shown in
+     */
+    public Color getColor()
+    {
+        return color;
+    }
+    
+    /**
+     * @return - the constants of this species, such as its ages and breeding figures
+     */
+    public SpeciesProfile getProfile()
+    {
+        return profile;
+    }
+    
+    /**
+     * Make a new organism of this species
+     * @param location - where the organism is to live
+     * @return - the new organism
+     */
+    public Organism create(Location location)
+    {
+        return constructor.apply(location);
+    }
+    
+    /**
+     * @return - the species this species eats, as a bitmask with bit n set if it eats the species with id n
+     */
+    public int getDiet()
+    {
+        return DIETS[ordinal()];
+    }
+    
+    /**
+     * Record the species an eater feeds on in the diet table
+     */
+    private static void diet(Species eater, Species... foods)
+    {
+        for (Species food : foods) {
+            DIETS[eater.ordinal()] |= 1 << food.ordinal();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+import java.util.Set;
+
+/**
+ * A SpeciesProfile holds the constants of one species (its ages, breeding, hunger, disease
+ * and spreading figures) in plain fields, along with the figures the weather changes worked
+ * out for every kind of weather.
+ *
+ * Each species' class builds its profile from its own constants when the class is loaded,
+ * and its Species constant holds it; every organism keeps a reference to its species'
+ * profile. Reading a plain field costs less in the busy parts of a step than a call which
+ * goes to a different class depending on the species. Profiles never change, so they are
+ * shared freely between organisms and threads.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public final class SpeciesProfile
+{
+    // The WeatherType values, in ordinal order
+    private static final WeatherType[] WEATHERS = WeatherType.values();
+
+    // The food points gained by eating an organism of the species
+    private final int foodValue;
+    // Animals: the ages at which they die and may breed
+    private final int deathAge, breedingAge;
+    // Animals: breeding chance, pregnancy length and largest litter
+    private final double breedingProbability;
+    private final int pregnancyDuration, maxLitterSize;
+    // Animals: largest and starting hunger levels
+    private final int maxFoodLevel, initialFoodLevel;
+    // Animals: chance of starting infected, of passing it on, and the days it takes to kill
+    private final double initialInfectionChance, diseaseSpread;
+    private final int diseaseDuration;
+    // Animals: the times of day they are active, one bit per TimeOfDay ordinal
+    private final int activeTimes;
+    // Plants: the age at which they die and their chance of spreading each step
+    private final int maxAge;
+    private final double chanceOfSpread;
+    // The figures above as the weather changes them, indexed by WeatherType ordinal
+    private final double[] breedingProbabilityIn = new double[WEATHERS.length];
+    private final double[] diseaseSpreadIn = new double[WEATHERS.length];
+    private final int[] maxAgeIn = new int[WEATHERS.length];
+    // Plants: the youngest age at which any weather kills them
+    private int shortestMaxAge;
+    private final double[] chanceOfSpreadIn = new double[WEATHERS.length];
+
+    /**
+     * Make a profile from a species' constants. Figures which do not apply to the kind of
+     * organism (plant figures for an animal, say) are zero.
+     */
+    private SpeciesProfile(int foodValue, int deathAge, int breedingAge, double breedingProbability,
+                           int pregnancyDuration, int maxLitterSize, int maxFoodLevel, int initialFoodLevel,
+                           double initialInfectionChance, double diseaseSpread, int diseaseDuration,
+                           int activeTimes, int maxAge, double chanceOfSpread)
+    {
+        this.foodValue = foodValue;
+        this.deathAge = deathAge;
+        this.breedingAge = breedingAge;
+        this.breedingProbability = breedingProbability;
+        this.pregnancyDuration = pregnancyDuration;
+        this.maxLitterSize = maxLitterSize;
+        this.maxFoodLevel = maxFoodLevel;
+        this.initialFoodLevel = initialFoodLevel;
+        this.initialInfectionChance = initialInfectionChance;
+        this.diseaseSpread = diseaseSpread;
+        this.diseaseDuration = diseaseDuration;
+        this.activeTimes = activeTimes;
+        this.maxAge = maxAge;
+        this.chanceOfSpread = chanceOfSpread;
+    }
+
+    /**
+     * Make the profile of an animal species from its constants, working out the weather's
+     * effect on them.
+     *
+     * @param foodValue The food points gained by eating one.
+     * @param deathAge The age at which one dies of old age.
+     * @param breedingAge The minimum age at which one may breed.
+     * @param breedingProbability The chance of breeding, before the weather.
+     * @param pregnancyDuration The number of steps a pregnancy lasts.
+     * @param maxLitterSize The largest number of young born from one pregnancy.
+     * @param maxFoodLevel The hunger level at which one is full.
+     * @param initialFoodLevel The hunger level one starts with.
+     * @param initialInfectionChance The chance of one being infected when it is made.
+     * @param diseaseSpread The chance of passing an infection to each neighbour, before the weather.
+     * @param diseaseDuration The number of days an infection takes to kill one.
+     * @param activeTimes The times of day the species is active.
+     * @return The profile.
+     */
+    static SpeciesProfile animal(int foodValue, int deathAge, int breedingAge, double breedingProbability,
+                                 int pregnancyDuration, int maxLitterSize, int maxFoodLevel, int initialFoodLevel,
+                                 double initialInfectionChance, double diseaseSpread, int diseaseDuration,
+                                 Set<TimeOfDay> activeTimes)
+    {
+        int times = 0;
+        for(TimeOfDay time : activeTimes) {
+            times |= 1 << time.ordinal();
+        }
+        SpeciesProfile profile = new SpeciesProfile(foodValue, deathAge, breedingAge, breedingProbability,
+                                                    pregnancyDuration, maxLitterSize, maxFoodLevel,
+                                                    initialFoodLevel, initialInfectionChance, diseaseSpread,
+                                                    diseaseDuration, times, 0, 0);
+        for(WeatherType weather : WEATHERS) {
+            profile.breedingProbabilityIn[weather.ordinal()] = Animal.weatherAffectedBreedingProbability(breedingProbability, weather);
+            profile.diseaseSpreadIn[weather.ordinal()] = Animal.weatherAffectedDiseaseSpread(diseaseSpread, weather);
+        }
+        return profile;
+    }
+
+    /**
+     * Make the profile of a plant species from its constants, working out the weather's
+     * effect on them.
+     *
+     * @param foodValue The food points gained by eating one.
+     * @param maxAge The age at which one dies, before the weather.
+     * @param chanceOfSpread The chance of one spreading each step, before the weather.
+     * @return The profile.
+     */
+    static SpeciesProfile plant(int foodValue, int maxAge, double chanceOfSpread)
+    {
+        SpeciesProfile profile = new SpeciesProfile(foodValue, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, maxAge,
+                                                    chanceOfSpread);
+        profile.shortestMaxAge = maxAge;
+        for(WeatherType weather : WEATHERS) {
+            profile.maxAgeIn[weather.ordinal()] = Plant.weatherAffectedMaxAge(maxAge, weather);
+            profile.chanceOfSpreadIn[weather.ordinal()] = Plant.weatherAffectedChanceOfSpread(chanceOfSpread, weather);
+            profile.shortestMaxAge = Math.min(profile.shortestMaxAge, profile.maxAgeIn[weather.ordinal()]);
+        }
+        return profile;
+    }
+
+    /**
+     * @return - the food points gained by eating an organism of this species
+     */
+    public int getFoodValue()
+    {
+        return foodValue;
+    }
+
+    /**
+     * @return - the age at which an animal dies of old age
+     */
+    public int getDeathAge()
+    {
+        return deathAge;
+    }
+
+    /**
+     * @return - the minimum age at which an animal may breed
+     */
+    public int getBreedingAge()
+    {
+        return breedingAge;
+    }
+
+    /**
+     * @return - the chance of an animal breeding, before the weather is taken into account
+     */
+    public double getBreedingProbability()
+    {
+        return breedingProbability;
+    }
+
+    /**
+     * @param weather - the current weather
+     * @return - the chance of an animal breeding in that weather
+     */
+    public double getBreedingProbability(WeatherType weather)
+    {
+        return breedingProbabilityIn[weather.ordinal()];
+    }
+
+    /**
+     * @return - the number of steps a pregnancy lasts
+     */
+    public int getPregnancyDuration()
+    {
+        return pregnancyDuration;
+    }
+
+    /**
+     * @return - the largest number of young born from one pregnancy
+     */
+    public int getMaxLitterSize()
+    {
+        return maxLitterSize;
+    }
+
+    /**
+     * @return - the hunger level at which an animal is full
+     */
+    public int getMaxFoodLevel()
+    {
+        return maxFoodLevel;
+    }
+
+    /**
+     * @return - the hunger level an animal starts with
+     */
+    public int getInitialFoodLevel()
+    {
+        return initialFoodLevel;
+    }
+
+    /**
+     * @return - the chance of an animal being infected when it is made
+     */
+    public double getInitialInfectionChance()
+    {
+        return initialInfectionChance;
+    }
+
+    /**
+     * @return - the chance of an infected animal infecting each neighbour, before the weather
+     */
+    public double getDiseaseSpread()
+    {
+        return diseaseSpread;
+    }
+
+    /**
+     * @param weather - the current weather
+     * @return - the chance of an infected animal infecting each neighbour in that weather
+     */
+    public double getDiseaseSpread(WeatherType weather)
+    {
+        return diseaseSpreadIn[weather.ordinal()];
+    }
+
+    /**
+     * @return - the number of days an infection takes to kill an animal
+     */
+    public int getDiseaseDuration()
+    {
+        return diseaseDuration;
+    }
+
+    /**
+     * @param currentTime - the time of day
+     * @return - whether an animal of this species is active at that time
+     */
+    public boolean isActiveAt(TimeOfDay currentTime)
+    {
+        return ((activeTimes >>> currentTime.ordinal()) & 1) != 0;
+    }
+
+    /**
+     * @return - the age at which a plant dies, before the weather is taken into account
+     */
+    public int getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * @param weather - the current weather
+     * @return - the age at which a plant dies in that weather
+     */
+    public int getMaxAge(WeatherType weather)
+    {
+        return maxAgeIn[weather.ordinal()];
+    }
+
+    /**
+     * @return - the youngest age at which a plant dies in any weather
+     */
+    public int getShortestMaxAge()
+    {
+        return shortestMaxAge;
+    }
+
+    /**
+     * @return - the chance of a plant spreading each step, before the weather
+     */
+    public double getChanceOfSpread()
+    {
+        return chanceOfSpread;
+    }
+
+    /**
+     * @param weather - the current weather
+     * @return - the chance of a plant spreading each step in that weather
+     */
+    public double getChanceOfSpread(WeatherType weather)
+    {
+        return chanceOfSpreadIn[weather.ordinal()];
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A StoreLane holds what one thread has to do with a state store while a step is updated
+ * in parallel, so that the thread can register, release and schedule organisms without
+ * taking the store's lock: a batch of ids taken from the store for the thread to hand out,
+ * the ids the thread has released, and the deaths it has scheduled. The store gathers
+ * every lane at the start and end of each step, when no other thread is using it.
+ *
+ * A lane is only ever used by its own thread, and by the store while no thread is acting.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class StoreLane
+{
+    // Number of entries each list starts with room for; the lists double when full.
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Ids taken from the store which have not been handed out yet
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int idCount;
+    // Ids released since the lane was last gathered
+    private int[] released = new int[INITIAL_CAPACITY];
+    private int releasedCount;
+    // Deaths scheduled since the lane was last gathered: the id, and the step it is due at
+    private int[] scheduledIds = new int[INITIAL_CAPACITY];
+    private int[] scheduledSteps = new int[INITIAL_CAPACITY];
+    private int scheduledCount;
+
+    /**
+     * Hand out one of the lane's ids.
+     *
+     * @return The id, or -1 if the lane has none left.
+     */
+    public int takeId()
+    {
+        return idCount > 0 ? ids[--idCount] : -1;
+    }
+
+    /**
+     * Give the lane an id to hand out.
+     *
+     * @param id The id.
+     */
+    public void addId(int id)
+    {
+        if(idCount == ids.length) {
+            ids = Arrays.copyOf(ids, idCount * 2);
+        }
+        ids[idCount++] = id;
+    }
+
+    /**
+     * Record that an id has been released.
+     *
+     * @param id The id.
+     */
+    public void release(int id)
+    {
+        if(releasedCount == released.length) {
+            released = Arrays.copyOf(released, releasedCount * 2);
+        }
+        released[releasedCount++] = id;
+    }
+
+    /**
+     * Record that an id is to be put on the store's timing wheel at a step.
+     *
+     * @param id The id.
+     * @param step The step it falls due at.
+     */
+    public void schedule(int id, int step)
+    {
+        if(scheduledCount == scheduledIds.length) {
+            scheduledIds = Arrays.copyOf(scheduledIds, scheduledCount * 2);
+            scheduledSteps = Arrays.copyOf(scheduledSteps, scheduledCount * 2);
+        }
+        scheduledIds[scheduledCount] = id;
+        scheduledSteps[scheduledCount] = step;
+        scheduledCount++;
+    }
+
+    /**
+     * Empty the lane into its store: the ids not handed out and the released ids are
+     * passed on, and the scheduled deaths are put on the wheel.
+     *
+     * @param unused What to do with each id the lane has not handed out.
+     * @param releasedIds What to do with each id released through the lane.
+     * @param deaths The store's timing wheel.
+     */
+    public void drain(IntConsumer unused, IntConsumer releasedIds, TimingWheel deaths)
+    {
+        for(int n = 0; n < idCount; n++) {
+            unused.accept(ids[n]);
+        }
+        for(int n = 0; n < releasedCount; n++) {
+            releasedIds.accept(released[n]);
+        }
+        for(int n = 0; n < scheduledCount; n++) {
+            deaths.schedule(scheduledIds[n], scheduledSteps[n]);
+        }
+        clear();
+    }
+
+    /**
+     * Forget everything in the lane (used when its store is cleared).
+     */
+    public void clear()
+    {
+        idCount = 0;
+        releasedCount = 0;
+        scheduledCount = 0;
+    }
+}
@@ -1,4 +1,3 @@
-import java.util.List;
 import java.util.Set;
 /**
  * The TigerShark class creates a Predator with specific features which match a tiger shark. All constant characteristics are stored in here,
@@ -11,6 +10,8 @@ public class TigerShark extends Predator
 {
     // How much a tiger shark can eat before being full i.e. at its stomach capacity
     private static final int MAX_FOOD_LEVEL = 140;
+    // The hunger level increase caused by eating one: none, as predators cannot be eaten
+    private static final int FOOD_VALUE = 0;
     // The max number of children that be can produced in one pregnancy
     private static final int MAX_LITTER_SIZE = 6;
     // The chance of a successful pregnancy, considering a partner a valid partner has been found
@@ -28,9 +29,11 @@ public class TigerShark extends Predator
     // how long the infection lasts before death 
     private static final int DISEASE_DURATION = 30;
     // Times of the day that a tiger shark hunts (is active)
-    private static Set<TimeOfDay> ACTIVE_TIMES = Set.of(TimeOfDay.MIDDAY, TimeOfDay.DAWN);
-    // The types of species that a tiger shark can consume.
-    private static List<Class<?>> EDIBLE_ORGANISMS = List.of(Parrotfish.class, Krill.class, Kelp.class, MarineAlgae.class); //Krill.class);
+    private static final Set<TimeOfDay> ACTIVE_TIMES = Set.of(TimeOfDay.MIDDAY, TimeOfDay.DAWN);
+    // The constants above, as the simulation reads them (see SpeciesProfile)
+    static final SpeciesProfile PROFILE = SpeciesProfile.animal(FOOD_VALUE, DEATH_AGE, BREEDING_AGE,
+            BREEDING_PROBABILITY, PREGNANCY_DURATION, MAX_LITTER_SIZE, MAX_FOOD_LEVEL, INITIAL_FOOD_LEVEL,
+            INITIAL_INFECTION_CHANCE, DISEASE_SPREAD, DISEASE_DURATION, ACTIVE_TIMES);
 
     
 
@@ -39,100 +42,19 @@ public class TigerShark extends Predator
      */
     public TigerShark(Location location)
     {
-        super(location); 
+        super(location, Species.TIGER_SHARK); 
     }
     
     
     /**
-     * Class to check whether the organism attempted to being eaten is consumable for a tiger shark.
-     * @param organism - the organism that is being eaten
-     * @return boolean - whether or not the organism can be eaten or not
+     * @return - the species of a tiger shark
      */
     @Override
-    protected boolean isEdible(Organism organism) 
+    public Species getSpecies()
     {
-        // iterates through each object and compares it the organism that the tiger shark is trying to eat
-        for ( Class<?> organismClass : EDIBLE_ORGANISMS) { 
-            if (organismClass.isInstance(organism)) { // checks whether object is an instance of this current class
-                return true;
-            }
-        }
-        return false; 
+        return Species.TIGER_SHARK;
     }
     
-    /**
-     * Class to check whether a tiger shark is active at the current time.
-     * @param currentTime - the current time in the simulation
-     * @return - whether or not the tiger shark is active during this time of day
-     */
-    public boolean isActiveAt(TimeOfDay currentTime)
-    {
-        if (ACTIVE_TIMES.contains(currentTime)) { 
-            return true; 
-        }
-        else {
-            return false;
-        }
-    }
-    
-    /**
-     * GETTER for MAX_FOOD_LEVEL
-     * @return - constant max food level
-     */
-    @Override
-    public int maxFoodLevel() 
-    {
-        return MAX_FOOD_LEVEL;
-    }
-    
-    /**
-     * Returns 0 (as predators cannot be eaten)
-     * @return 0 - a tiger shark is a predator that cannot be eaten
-     */
-    @Override
-    protected int foodValue() {
-        return 0; 
-    }
-    
-    /**
-     * GETTER for MAX_LITTER_SIZE
-     * @return - max number of children born after a pregnancy
-     */
-    @Override
-    public int maxLitterSize()
-    {
-        return MAX_LITTER_SIZE;
-    }
-    
-    /**
-     * GETTER for BREEDING_PROBABILITY
-     * @return - the chance the tiger shark can breed, considering that they have found a suitable partner
-     */
-    @Override
-    public double breedingProbability()
-    {
-        return BREEDING_PROBABILITY;
-    }
-    
-    /**
-     * GETTER for BREEDING_AGE
-     * @return - minimum age required to breed
-     */
-    @Override   
-    public int breedingAge()
-    {
-        return BREEDING_AGE;
-    }
-    
-    /**
-     * GETTER for PREGNANCY_DURATION
-     * @return - number of days untill animal gives birth
-     */
-    @Override
-    public int pregnancyDuration()
-    {
-        return PREGNANCY_DURATION;
-    }
     /**
      * Creates a new Tiger Shark object (an offspring) after pregnancy
      * @param - The location for a child
@@ -142,38 +64,4 @@ public class TigerShark extends Predator
     public Animal createYoung(Location location) {
         return new TigerShark(location);
     }
-    
-    /**
-     * @return - the maximum age a tiger shark can live up to
-     */
-    @Override
-    public int deathAge()
-    {
-        return DEATH_AGE;
-    }
-    /**
-     * @return - chance of being infected from the start of the simulation
-     */
-    @Override
-    public double initialInfectionChance()
-    {
-        return INITIAL_INFECTION_CHANCE;
-    }
-    /**
-     * @return - the probability that an adjacent animal will get infected
-     */
-    @Override
-    public double diseaseSpread()
-    {
-        return DISEASE_SPREAD;
-    }
-    
-    /**
-     * @return - the duration a tiger shark lasts once a terminal disease has got them
-     */
-    @Override
-    public int diseaseDuration()
-    {
-        return DISEASE_DURATION;
-    }
 }
\ No newline at end of file
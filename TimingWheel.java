@@ -0,0 +1,85 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A TimingWheel holds ids which fall due at known future steps, so that an event which is
+ * known in advance (an animal reaching its death age, say) needs no attention until its
+ * step comes round.
+ *
+ * The wheel is a ring of slots, one per step. An id due at a step goes in the slot of that
+ * step modulo the number of slots, and is handed out when the step is reached. An id due
+ * more than one turn of the wheel ahead waits in its slot while the wheel passes it by.
+ *
+ * The wheel does not check that an event still holds when it falls due: an id may have been
+ * scheduled more than once, or its owner may have died or been rescheduled since. Whoever
+ * takes the due ids checks them.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public class TimingWheel
+{
+    // The number of slots, a power of two; most events fall due within one turn
+    private static final int SLOTS = 512;
+    // The number of entries each slot starts with room for; slots double when full
+    private static final int INITIAL_SLOT_CAPACITY = 8;
+
+    // The ids in each slot, and the step each of them is due at
+    private final int[][] ids = new int[SLOTS][INITIAL_SLOT_CAPACITY];
+    private final int[][] dueSteps = new int[SLOTS][INITIAL_SLOT_CAPACITY];
+    // The number of entries in each slot
+    private final int[] counts = new int[SLOTS];
+
+    /**
+     * Schedule an id to fall due at a step.
+     *
+     * @param id The id.
+     * @param step The step it falls due at, which must be after the last step taken.
+     */
+    public void schedule(int id, int step)
+    {
+        int slot = step & (SLOTS - 1);
+        int n = counts[slot];
+        if(n == ids[slot].length) {
+            ids[slot] = Arrays.copyOf(ids[slot], n * 2);
+            dueSteps[slot] = Arrays.copyOf(dueSteps[slot], n * 2);
+        }
+        ids[slot][n] = id;
+        dueSteps[slot][n] = step;
+        counts[slot] = n + 1;
+    }
+
+    /**
+     * Hand every id due at a step to an action and remove it from the wheel. Ids waiting
+     * for a later turn stay where they are. Steps must be taken in order, one at a time.
+     *
+     * @param step The step which has been reached.
+     * @param action What to do with each id due at that step.
+     */
+    public void takeDue(int step, IntConsumer action)
+    {
+        int slot = step & (SLOTS - 1);
+        int[] slotIds = ids[slot];
+        int[] slotSteps = dueSteps[slot];
+        int kept = 0;
+        for(int n = 0; n < counts[slot]; n++) {
+            if(slotSteps[n] == step) {
+                action.accept(slotIds[n]);
+            }
+            else if(slotSteps[n] > step) {
+                slotIds[kept] = slotIds[n];
+                slotSteps[kept] = slotSteps[n];
+                kept++;
+            }
+        }
+        counts[slot] = kept;
+    }
+
+    /**
+     * Remove every entry from the wheel.
+     */
+    public void clear()
+    {
+        Arrays.fill(counts, 0);
+    }
+}
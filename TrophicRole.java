@@ -0,0 +1,11 @@
+/**
+ * The TrophicRole enum says where a species sits in the food chain. The simulation is
+ * viable while at least one predator and one prey are alive.
+ *
+ * @author Jushan and Adarsh
+ * @version v1
+ */
+public enum TrophicRole
+{
+    PREDATOR, PREY, PLANT
+}
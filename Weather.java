@@ -9,7 +9,7 @@ import java.util.Random;
  */
 public class Weather
 {
-    private static final Random RANDOM = Randomizer.getRandom();
+    private static final Random RANDOM = Randomizer.getRandom(RandomPurpose.WEATHER);
 
     // The current weather type
     private WeatherType currentWeather;